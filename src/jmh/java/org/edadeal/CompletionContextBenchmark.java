@@ -0,0 +1,37 @@
+package org.edadeal;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line classification runs on every completion keystroke in Stylus files, so it has to stay far below a microsecond.
+ * This covers the classification cost only. Editors of other languages are not measured: the contributor is
+ * registered for Stylus, so the platform does not call it there at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletionContextBenchmark {
+    private final String[] lines = {
+            ".block-header",
+            "    col",
+            "    color ",
+            "    background-color: #f",
+            "    &:hover",
+            "  $accent = ",
+            "    margin 0 auto; padding 4px 8px 4px 8p",
+            ""
+    };
+
+    @Benchmark
+    public void classifyLine(Blackhole blackhole) {
+        for (final String line: lines) {
+            blackhole.consume(StylusCompletionContext.classifyLine(line));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.edadeal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java side of a lint run, as TypeCheck does it: stream stlint's report through OutputReader and map it onto the text.
+ * {@link #indexAndMap} includes indexing the lines of the text, which every run does, {@link #streamAndMap} reuses the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+    @Param({"10", "100", "1000"})
+    public int errors;
+
+    private String report;
+    private String suggestions;
+    private String theme;
+    private LineIndex lines;
+
+    @Setup
+    public void setUp() {
+        report = Samples.report(errors);
+        suggestions = Samples.load("suggestions-100.json");
+        theme = Samples.theme(errors);
+        lines = LineIndex.of(theme);
+    }
+
+    @Benchmark
+    public Output.Suggestions parseSuggestions() {
+        return Output.parseSuggestions(suggestions);
+    }
+
+    @Benchmark
+    public Collection<Error> streamAndMap() throws IOException {
+        return map(lines);
+    }
+
+    @Benchmark
+    public Collection<Error> indexAndMap() throws IOException {
+        return map(LineIndex.of(theme));
+    }
+
+    private Collection<Error> map(LineIndex lines) throws IOException {
+        final OutputReader reader = new OutputReader(Samples.PATH, lines);
+        reader.consume(new StringReader(report), null);
+        return reader.getErrors();
+    }
+}
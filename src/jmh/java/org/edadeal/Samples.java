@@ -0,0 +1,36 @@
+package org.edadeal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * stlint reports with the Stylus fixtures they were taken for, see record.sh next to them to re-record.
+ */
+final class Samples {
+    static final String PATH = "/project/styles/theme.styl";
+
+    private Samples() {
+    }
+
+    static String load(String name) {
+        try (InputStream stream = Objects.requireNonNull(Samples.class.getResourceAsStream("/stlint/" + name))) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String report(int errors) {
+        return load("report-" + errors + ".json");
+    }
+
+    /**
+     * The Stylus text the report with the same number of errors was taken for
+     */
+    static String theme(int errors) {
+        return load("theme-" + errors + ".styl");
+    }
+}
@@ -0,0 +1,17 @@
+#!/bin/sh
+# Replaces report-<n>.json with what a real stlint reports for theme-<n>.styl:
+#   ./record.sh /path/to/node_modules/.bin/stlint
+# The reports refer to the fixture as /project/styles/theme.styl, the path OutputBenchmark lints it under.
+
+stlint="${1:?path to the stlint executable}"
+here="$(cd "$(dirname "$0")" && pwd)"
+work="$(mktemp -d)"
+
+trap 'rm -rf "$work"' EXIT
+
+for errors in 10 100 1000; do
+    cp "$here/theme-$errors.styl" "$work/theme.styl"
+    # stlint exits with a failure status when it finds errors, the report is what matters
+    "$stlint" "$work/theme.styl" --reporter json > "$work/report.json" || true
+    sed "s#$work/theme.styl#/project/styles/theme.styl#g" "$work/report.json" > "$here/report-$errors.json"
+done
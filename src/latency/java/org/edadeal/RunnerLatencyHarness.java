@@ -0,0 +1,351 @@
+package org.edadeal;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.testFramework.TestApplicationManager;
+import org.edadeal.utils.LatencyHistogram;
+import org.edadeal.utils.LintStats;
+import org.edadeal.utils.StylusLinterDaemonPool;
+import org.edadeal.utils.StylusLinterRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runner-only benchmark: drives StylusLinterRunner, the daemon pool and report mapping against a stub stlint
+ * in a headless application, over generated Stylus files of 10 to 10,000 lines, once per transport.
+ * What TypeCheck adds on top, scheduling, single-flight, config resolution, the import graph stamp, the result
+ * caches and the annotator, is not exercised, so the numbers are a lower bound of what users see.
+ *
+ * <pre>./gradlew latency -PlatencyArgs='--iterations 30 --delay 50 --errors 100'</pre>
+ *
+ * Allocation is what the linting thread allocated; daemon reader threads and node itself are not included.
+ */
+public final class RunnerLatencyHarness {
+    private static final int[] SIZES = {10, 100, 1000, 10000};
+    private static final String[] STUB_FILES = {"package.json", "index.js", "report.js", "bin/stlint.js"};
+
+    private enum Mode {
+        /** .bin shim, one process per lint */
+        SPAWN_SHIM(false, false, false, false),
+        /** configured node running stlint's entry, one process per lint */
+        SPAWN(true, false, false, false),
+        /** as SPAWN with the V8 compile cache directory */
+        SPAWN_COMPILE_CACHE(true, false, true, false),
+        /** resident daemon, full text per lint */
+        DAEMON(true, true, false, false),
+        /** resident daemon, only edits after the first lint */
+        DAEMON_INCREMENTAL(true, true, false, true);
+
+        final boolean direct;
+        final boolean daemon;
+        final boolean compileCache;
+        final boolean incremental;
+
+        Mode(boolean direct, boolean daemon, boolean compileCache, boolean incremental) {
+            this.direct = direct;
+            this.daemon = daemon;
+            this.compileCache = compileCache;
+            this.incremental = incremental;
+        }
+    }
+
+    private static final class Sample {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long allocated;
+        long spawns;
+        int runs;
+        int errors;
+    }
+
+    private final File workspace;
+    private final String node;
+    private final int iterations;
+    private final StringBuilder csv = new StringBuilder("mode,kind,lines,transport,runs,p50_ms,p95_ms,max_ms,mean_ms,spawns_per_run,allocated_kb_per_run,errors\n");
+
+    private RunnerLatencyHarness(File workspace, String node, int iterations) {
+        this.workspace = workspace;
+        this.node = node;
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String node = "node";
+        int iterations = 20;
+        int delay = 0;
+        int errors = 50;
+        File out = new File("build/latency");
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--node":
+                    node = args[i + 1];
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--delay":
+                    delay = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--errors":
+                    errors = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--out":
+                    out = new File(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        TestApplicationManager.getInstance();
+
+        final File workspace = FileUtil.createTempDirectory("stlint-latency", null);
+
+        try {
+            final RunnerLatencyHarness harness = new RunnerLatencyHarness(workspace, node, iterations);
+
+            harness.install(delay, errors);
+            harness.run();
+
+            FileUtil.writeToFile(new File(out, "latency.csv"), harness.csv.toString());
+            System.out.println("\nwritten to " + new File(out, "latency.csv").getAbsolutePath());
+        } finally {
+            StylusLinterDaemonPool.getInstance().stopAll();
+            FileUtil.delete(workspace);
+        }
+
+        System.exit(0);
+    }
+
+    private void install(int delay, int errors) throws IOException {
+        final File packageDir = new File(workspace, "node_modules/stlint");
+
+        for (final String name: STUB_FILES) {
+            try (InputStream stream = Objects.requireNonNull(RunnerLatencyHarness.class.getResourceAsStream("/stlint-stub/" + name))) {
+                final File target = new File(packageDir, name);
+                FileUtil.createParentDirs(target);
+                Files.copy(stream, target.toPath());
+            }
+        }
+
+        FileUtil.writeToFile(
+                new File(packageDir, "stub.json"),
+                "{\"delay\":" + delay + ",\"errors\":" + errors + ",\"suggests\":20}"
+        );
+
+        final File shim = getExe();
+        FileUtil.createParentDirs(shim);
+
+        if (SystemInfo.isWindows) {
+            FileUtil.writeToFile(shim, "@\"" + node + "\" \"%~dp0\\..\\stlint\\bin\\stlint.js\" %*\r\n");
+        } else {
+            FileUtil.writeToFile(shim, "#!/bin/sh\nexec \"" + node + "\" \"$(dirname \"$0\")/../stlint/bin/stlint.js\" \"$@\"\n");
+            FileUtil.setExecutable(shim);
+        }
+
+        for (final int lines: SIZES) {
+            FileUtil.writeToFile(getStyl(lines), generate(lines));
+        }
+    }
+
+    private void run() {
+        System.out.printf(Locale.ROOT, "%-20s %-12s %6s %-10s %8s %8s %8s %7s %10s%n",
+                "mode", "kind", "lines", "transport", "p50 ms", "p95 ms", "max ms", "spawns", "alloc KB");
+
+        for (final Mode mode: Mode.values()) {
+            configure(mode);
+
+            for (final int lines: SIZES) {
+                lint(mode, lines);
+            }
+
+            StylusLinterDaemonPool.getInstance().stopAll();
+        }
+
+        configure(Mode.SPAWN);
+
+        for (final int lines: SIZES) {
+            complete(lines);
+        }
+    }
+
+    private static void configure(Mode mode) {
+        Registry.get("stlint.daemon.enabled").setValue(mode.daemon);
+        Registry.get("stlint.daemon.incremental").setValue(mode.incremental);
+        Registry.get("stlint.node.compile.cache").setValue(mode.compileCache);
+    }
+
+    private void lint(Mode mode, int lines) {
+        final File file = getStyl(lines);
+        final Document document = EditorFactory.getInstance().createDocument(generate(lines));
+        final Sample sample = new Sample();
+
+        String transport = null;
+
+        // the first run starts daemons and warms caches, it is not measured
+        for (int i = -1; i < iterations; i++) {
+            edit(document, i);
+
+            final CharSequence content = document.getImmutableCharSequence();
+            final StylusLinterRunner.ExtraParams extra = new StylusLinterRunner.ExtraParams();
+
+            extra.indicator = new EmptyProgressIndicator();
+            extra.document = document;
+            extra.version = document.getModificationStamp();
+
+            final StylusLinterRunner.Params params = new StylusLinterRunner.Params(
+                    workspace.getAbsolutePath(),
+                    file.getAbsolutePath(),
+                    getExe().getAbsolutePath(),
+                    null,
+                    content,
+                    extra,
+                    mode.direct ? node : null
+            );
+
+            transport = mode.daemon ? "daemon" : StylusLinterRunner.chooseTransport(params).name().toLowerCase(Locale.ROOT);
+
+            final long spawns = LintStats.get(LintStats.Counter.SPAWNS);
+            final long allocated = getAllocatedBytes();
+            final long start = System.nanoTime();
+
+            final OutputReader reader = new OutputReader(file.getAbsolutePath(), LineIndex.of(content));
+            final StylusLinterRunner.Result result = StylusLinterRunner.runLint(params, reader);
+
+            if (!result.isOk) {
+                throw new IllegalStateException("stub stlint failed: " + result.errorOutput);
+            }
+
+            final Collection<Error> errors = reader.getErrors();
+
+            if (i >= 0) {
+                record(sample, start, allocated, spawns);
+                sample.errors = errors.size();
+            }
+        }
+
+        report(mode.name(), "lint", lines, transport, sample);
+    }
+
+    private void complete(int lines) {
+        final File file = getStyl(lines);
+        final String text = generate(lines);
+        final Sample sample = new Sample();
+
+        for (int i = -1; i < iterations; i++) {
+            final StylusLinterRunner.ExtraParams extra = new StylusLinterRunner.ExtraParams();
+
+            extra.indicator = new EmptyProgressIndicator();
+            extra.command = "autocomplete";
+            extra.offset = text.length();
+            extra.line = text.lastIndexOf('\n') + 1;
+
+            final long spawns = LintStats.get(LintStats.Counter.SPAWNS);
+            final long allocated = getAllocatedBytes();
+            final long start = System.nanoTime();
+
+            final StylusLinterRunner.Result result = StylusLinterRunner.runLint(new StylusLinterRunner.Params(
+                    workspace.getAbsolutePath(),
+                    file.getAbsolutePath(),
+                    getExe().getAbsolutePath(),
+                    null,
+                    text,
+                    extra,
+                    node
+            ));
+
+            final Output.Suggestions suggestions = Output.parseSuggestions(Objects.requireNonNull(result.output));
+
+            if (i >= 0) {
+                record(sample, start, allocated, spawns);
+                sample.errors = suggestions.suggests.size();
+            }
+        }
+
+        report("SPAWN", "completion", lines, "cli", sample);
+    }
+
+    private static void record(Sample sample, long start, long allocated, long spawns) {
+        sample.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        sample.allocated += getAllocatedBytes() - allocated;
+        sample.spawns += LintStats.get(LintStats.Counter.SPAWNS) - spawns;
+        sample.runs++;
+    }
+
+    private void report(String mode, String kind, int lines, String transport, Sample sample) {
+        final LatencyHistogram latency = sample.latency;
+        final double spawns = (double) sample.spawns / Math.max(1, sample.runs);
+        final double allocated = sample.allocated / 1024.0 / Math.max(1, sample.runs);
+
+        System.out.printf(Locale.ROOT, "%-20s %-12s %6d %-10s %8.1f %8.1f %8.1f %7.2f %10.1f%n",
+                mode, kind, lines, transport,
+                latency.getPercentileMicros(0.5) / 1000.0,
+                latency.getPercentileMicros(0.95) / 1000.0,
+                latency.getMaxMicros() / 1000.0,
+                spawns,
+                allocated);
+
+        csv.append(String.format(Locale.ROOT, "%s,%s,%d,%s,%d,%.3f,%.3f,%.3f,%.3f,%.2f,%.1f,%d%n",
+                mode, kind, lines, transport, sample.runs,
+                latency.getPercentileMicros(0.5) / 1000.0,
+                latency.getPercentileMicros(0.95) / 1000.0,
+                latency.getMaxMicros() / 1000.0,
+                latency.getMeanMicros() / 1000.0,
+                spawns,
+                allocated,
+                sample.errors));
+    }
+
+    /**
+     * Types one character into a different line each time, like a user editing the file
+     */
+    private static void edit(Document document, int iteration) {
+        ApplicationManager.getApplication().invokeAndWait(() -> WriteCommandAction.runWriteCommandAction(null, () -> {
+            final int line = Math.floorMod(iteration * 31, document.getLineCount());
+            document.insertString(document.getLineEndOffset(line), ";");
+        }));
+    }
+
+    private File getExe() {
+        return new File(workspace, "node_modules/.bin/" + (SystemInfo.isWindows ? "stlint.cmd" : "stlint"));
+    }
+
+    private File getStyl(int lines) {
+        return new File(workspace, "styles/theme-" + lines + ".styl");
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String generate(int lines) {
+        final StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < lines; i++) {
+            if (i % 8 == 0) {
+                builder.append(".block-").append(i / 8).append('\n');
+            } else {
+                builder.append("    ")
+                        .append(i % 3 == 0 ? "color #fff" : i % 3 == 1 ? "margin 0px" : "padding " + i % 16 + "px")
+                        .append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+}
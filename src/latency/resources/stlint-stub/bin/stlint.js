@@ -0,0 +1,56 @@
+#!/usr/bin/env node
+'use strict';
+
+// The command line the plugin spawns: <file> --reporter json [--config c]
+// [--stdin | --content text [--newline sep]] [--command autocomplete --offset n --offsetline n]
+
+const fs = require('fs');
+const {settings, sleep, report, suggests} = require('../report');
+
+const args = process.argv.slice(2);
+
+if (args.includes('--help')) {
+    console.log('Usage: stlint <file> [--reporter json] [--config path] [--content text] [--newline sep] [--stdin] [--command name]');
+    process.exit(0);
+}
+
+function option(name) {
+    const index = args.indexOf(name);
+    return index >= 0 ? args[index + 1] : undefined;
+}
+
+async function readContent(file) {
+    if (args.includes('--stdin')) {
+        const chunks = [];
+
+        for await (const chunk of process.stdin) {
+            chunks.push(chunk);
+        }
+
+        return Buffer.concat(chunks).toString('utf8');
+    }
+
+    const content = option('--content');
+
+    if (content !== undefined) {
+        const newline = option('--newline');
+        return newline ? content.split(newline).join('\n') : content;
+    }
+
+    return fs.readFileSync(file, 'utf8');
+}
+
+(async () => {
+    const file = args[0];
+    const content = await readContent(file);
+    const current = settings();
+
+    await sleep(current.delay || 0);
+
+    if (option('--command') === 'autocomplete') {
+        process.stdout.write(JSON.stringify(suggests(current.suggests || 20)));
+        return;
+    }
+
+    process.stdout.write(JSON.stringify(report(file, content, current.errors || 0)));
+})();
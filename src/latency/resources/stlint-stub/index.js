@@ -0,0 +1,25 @@
+'use strict';
+
+// The part of stlint's API the plugin's daemon uses.
+
+const fs = require('fs');
+const {settings, sleep, report} = require('./report');
+
+class Linter {
+    constructor(options) {
+        this.options = options || {};
+    }
+
+    async lint(file, content) {
+        this.file = file;
+        this.content = typeof content === 'string' ? content : fs.readFileSync(file, 'utf8');
+
+        await sleep(settings().delay || 0);
+    }
+
+    display() {
+        console.log(JSON.stringify(report(this.file, this.content, settings().errors || 0)));
+    }
+}
+
+module.exports = {Linter};
@@ -0,0 +1,55 @@
+'use strict';
+
+// Behaviour is read from stub.json next to this file on every run, so the harness can
+// change it between scenarios without restarting resident daemons:
+// {"delay": <ms before answering>, "errors": <errors per report>, "suggests": <suggestions>}
+
+const fs = require('fs');
+const path = require('path');
+
+function settings() {
+    try {
+        return JSON.parse(fs.readFileSync(path.join(__dirname, 'stub.json'), 'utf8'));
+    } catch (e) {
+        return {};
+    }
+}
+
+function sleep(ms) {
+    return new Promise((resolve) => setTimeout(resolve, ms));
+}
+
+function report(file, content, errors) {
+    const lines = content.split('\n').length;
+    const result = [];
+
+    for (let i = 0; i < errors; i++) {
+        const line = 1 + (i * 7) % lines;
+
+        result.push({
+            message: [{
+                descr: 'Stub violation ' + i,
+                path: file,
+                line,
+                endline: line,
+                start: 1,
+                end: 4,
+                fix: i % 2 ? {replace: '#FFF'} : undefined
+            }]
+        });
+    }
+
+    return {passed: errors === 0, errors: result};
+}
+
+function suggests(count) {
+    const result = [];
+
+    for (let i = 0; i < count; i++) {
+        result.push({title: 'stub-property-' + i});
+    }
+
+    return {suggests: result};
+}
+
+module.exports = {settings, sleep, report, suggests};
@@ -24,14 +24,30 @@ public class Error {
     private final @NotNull
     TextRange range;
 
+    /**
+     * Name of the stlint rule that reported the error, when the report says
+     */
+    @Nullable
+    private final String rule;
+
+    @Nullable
+    String rule() {
+        return rule;
+    }
+
     @NotNull
     TextRange range() {
         return range;
     }
 
     public Error(final @NotNull String msg, final @NotNull TextRange textRange, @Nullable String fix) {
+        this(msg, textRange, fix, null);
+    }
+
+    public Error(final @NotNull String msg, final @NotNull TextRange textRange, @Nullable String fix, @Nullable String rule) {
         this.message = msg;
         this.fix = fix;
         this.range = textRange;
+        this.rule = rule;
     }
 }
\ No newline at end of file
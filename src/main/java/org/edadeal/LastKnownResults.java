@@ -0,0 +1,215 @@
+package org.edadeal;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The last applied results of a document, kept as range markers so they follow edits.
+ * When stlint is late, the annotator shows these and restarts itself once the fresh run has finished.
+ */
+final class LastKnownResults {
+    private static final Logger log = Logger.getInstance(LastKnownResults.class);
+    private static final Key<List<Marked>> LAST_KNOWN = Key.create("stlint.last.known.results");
+    private static final Key<Pending> PENDING = Key.create("stlint.pending.run");
+    private static final int POLL_INTERVAL = 10;
+    /**
+     * Guards {@link #PENDING}; documents are not ours to lock
+     */
+    private static final Object pendingLock = new Object();
+
+    private static final class Marked {
+        @NotNull
+        final RangeMarker marker;
+        @NotNull
+        final String message;
+        @Nullable
+        final String fix;
+        @Nullable
+        final String rule;
+
+        Marked(@NotNull RangeMarker marker, @NotNull String message, @Nullable String fix, @Nullable String rule) {
+            this.marker = marker;
+            this.message = message;
+            this.fix = fix;
+            this.rule = rule;
+        }
+    }
+
+    private static final class Pending {
+        final long stamp;
+        @NotNull
+        final CompletableFuture<Collection<Error>> future;
+        final AtomicBoolean restartScheduled = new AtomicBoolean();
+
+        Pending(long stamp, @NotNull CompletableFuture<Collection<Error>> future) {
+            this.stamp = stamp;
+            this.future = future;
+        }
+    }
+
+    private LastKnownResults() {
+    }
+
+    static int getDeadline() {
+        return Registry.intValue("stlint.annotator.deadline.ms", 300);
+    }
+
+    /**
+     * Lints the document on a pooled thread, so the run survives the highlighting pass that started it
+     */
+    @NotNull
+    static Collection<Error> errors(@NotNull PsiFile file, @NotNull Document document, @NotNull LintScheduler.Priority priority) {
+        final List<Marked> lastKnown = document.getUserData(LAST_KNOWN);
+
+        if (lastKnown == null) {
+            return TypeCheck.errors(file, document, 0, priority);
+        }
+
+        final Pending pending = start(file, document, priority);
+        final Collection<Error> fresh;
+
+        try {
+            fresh = await(pending.future, getDeadline());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProcessCanceledException) {
+                // a newer version of the document superseded this run, its own pass follows
+                throw new ProcessCanceledException(e);
+            }
+
+            // no restart: it would find the same failed run for this version
+            log.warn("stlint run failed for " + file.getName(), e.getCause());
+            return rebase(lastKnown);
+        }
+
+        if (fresh != null) {
+            return fresh;
+        }
+
+        if (pending.restartScheduled.compareAndSet(false, true)) {
+            pending.future.thenRun(() -> ApplicationManager.getApplication().invokeLater(() -> {
+                if (file.isValid() && document.getModificationStamp() == pending.stamp) {
+                    DaemonCodeAnalyzer.getInstance(file.getProject()).restart(file);
+                }
+            }, file.getProject().getDisposed()));
+        }
+
+        return rebase(lastKnown);
+    }
+
+    /**
+     * Called with the results being applied, which match the current document text
+     */
+    static void remember(@NotNull Document document, @NotNull Collection<Error> errors) {
+        final List<Marked> previous = document.getUserData(LAST_KNOWN);
+        final List<Marked> marked = new ArrayList<>(errors.size());
+        final int length = document.getTextLength();
+
+        for (final Error error: errors) {
+            final TextRange range = error.range();
+
+            if (range.getEndOffset() > length) {
+                continue;
+            }
+
+            marked.add(new Marked(document.createRangeMarker(range), error.message(), error.fix(), error.rule()));
+        }
+
+        document.putUserData(LAST_KNOWN, marked);
+
+        if (previous != null) {
+            previous.forEach(entry -> entry.marker.dispose());
+        }
+    }
+
+    @NotNull
+    private static Pending start(@NotNull PsiFile file, @NotNull Document document, @NotNull LintScheduler.Priority priority) {
+        final long stamp = document.getModificationStamp();
+
+        synchronized (pendingLock) {
+            final Pending pending = document.getUserData(PENDING);
+
+            if (pending != null && pending.stamp == stamp) {
+                return pending;
+            }
+
+            final Pending started = new Pending(stamp, CompletableFuture.supplyAsync(
+                    () -> ProgressManager.getInstance().runProcess(
+                            () -> TypeCheck.errors(file, document, 0, priority),
+                            new EmptyProgressIndicator()
+                    ),
+                    AppExecutorUtil.getAppExecutorService()
+            ));
+
+            document.putUserData(PENDING, started);
+
+            return started;
+        }
+    }
+
+    /**
+     * @return null when the run has not finished before the deadline
+     * @throws ExecutionException when the run failed or was superseded
+     */
+    @Nullable
+    private static Collection<Error> await(
+            @NotNull CompletableFuture<Collection<Error>> future,
+            int deadlineInMilliseconds
+    ) throws ExecutionException {
+        final long deadline = System.currentTimeMillis() + deadlineInMilliseconds;
+
+        while (true) {
+            ProgressManager.checkCanceled();
+
+            try {
+                return future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return null;
+                }
+            } catch (CancellationException | InterruptedException e) {
+                throw new ProcessCanceledException(e);
+            }
+        }
+    }
+
+    @NotNull
+    private static Collection<Error> rebase(@NotNull List<Marked> lastKnown) {
+        if (lastKnown.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Error> errors = new ArrayList<>(lastKnown.size());
+
+        for (final Marked entry: lastKnown) {
+            if (entry.marker.isValid()) {
+                errors.add(new Error(entry.message, entry.marker.getTextRange(), entry.fix, entry.rule));
+            }
+        }
+
+        return errors;
+    }
+}
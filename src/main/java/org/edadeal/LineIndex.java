@@ -0,0 +1,44 @@
+package org.edadeal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Line start offsets of the exact text stlint was given, so reported lines map to offsets of that snapshot.
+ */
+final class LineIndex {
+    private final int[] lineStarts;
+    private final int lineCount;
+
+    private LineIndex(int[] lineStarts, int lineCount) {
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+    }
+
+    @NotNull
+    static LineIndex of(@NotNull CharSequence text) {
+        int[] starts = new int[Math.max(16, text.length() / 32)];
+        int count = 1;
+
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+
+                starts[count++] = i + 1;
+            }
+        }
+
+        return new LineIndex(starts, count);
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getLineStartOffset(int line) {
+        return lineStarts[line];
+    }
+}
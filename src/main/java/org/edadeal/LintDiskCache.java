@@ -0,0 +1,267 @@
+package org.edadeal;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.IOUtil;
+import org.edadeal.utils.ContentHash;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapped stlint results kept under the IDE system directory, so unchanged files are highlighted after a restart without running stlint.
+ * One small binary file per entry; the oldest entries are deleted when the directory grows past its budget.
+ */
+final class LintDiskCache {
+    private static final Logger log = Logger.getInstance(LintDiskCache.class);
+
+    private static final int FORMAT = 3;
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+    private static final long TRIMMED_BYTES = MAX_BYTES * 3 / 4;
+    private static final String SUFFIX = ".bin";
+
+    @NotNull
+    private final File dir;
+    private long bytes = -1;
+
+    LintDiskCache() {
+        this(new File(PathManager.getSystemPath(), "stlint/results"));
+    }
+
+    LintDiskCache(@NotNull File dir) {
+        this.dir = dir;
+    }
+
+    @Nullable
+    LintResult get(@NotNull LintResultCache.Key key) {
+        final File file = getFile(key);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT || in.readLong() != key.contentHash || in.readInt() != key.contentLength) {
+                return null;
+            }
+
+            final int count = in.readInt();
+            final List<Error> errors = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                final String message = IOUtil.readUTF(in);
+                final int start = in.readInt();
+                final int end = in.readInt();
+                final String fix = readNullableUTF(in);
+                final String rule = readNullableUTF(in);
+
+                errors.add(new Error(message, TextRange.create(start, end), fix, rule));
+            }
+
+            final int targets = in.readInt();
+            final Map<String, List<OutputReader.ForeignError>> foreignErrors = new HashMap<>(targets);
+
+            for (int i = 0; i < targets; i++) {
+                final String target = IOUtil.readUTF(in);
+                final int size = in.readInt();
+                final List<OutputReader.ForeignError> foreign = new ArrayList<>(size);
+
+                for (int j = 0; j < size; j++) {
+                    final String message = IOUtil.readUTF(in);
+                    final int line = in.readInt();
+                    final int endline = in.readInt();
+                    final int start = in.readInt();
+                    final int end = in.readInt();
+                    final String fix = readNullableUTF(in);
+                    final String rule = readNullableUTF(in);
+
+                    foreign.add(new OutputReader.ForeignError(message, line, endline, start, end, fix, rule));
+                }
+
+                foreignErrors.put(target, foreign);
+            }
+
+            touch(file);
+
+            return new LintResult(
+                    errors.isEmpty() ? Collections.emptyList() : errors,
+                    foreignErrors.isEmpty() ? Collections.emptyMap() : foreignErrors
+            );
+        } catch (IOException | RuntimeException e) {
+            log.info("dropping unreadable stlint result " + file, e);
+            FileUtil.delete(file);
+            return null;
+        }
+    }
+
+    void put(@NotNull LintResultCache.Key key, @NotNull LintResult result) {
+        final File file = getFile(key);
+        File temp = null;
+
+        try {
+            FileUtil.createParentDirs(file);
+
+            // unique per writer, two lints of the same text may store it at once
+            temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(FORMAT);
+                out.writeLong(key.contentHash);
+                out.writeInt(key.contentLength);
+                out.writeInt(result.errors.size());
+
+                for (final Error error: result.errors) {
+                    IOUtil.writeUTF(out, error.message());
+                    out.writeInt(error.range().getStartOffset());
+                    out.writeInt(error.range().getEndOffset());
+                    writeNullableUTF(out, error.fix());
+                    writeNullableUTF(out, error.rule());
+                }
+
+                out.writeInt(result.foreignErrors.size());
+
+                for (final Map.Entry<String, List<OutputReader.ForeignError>> entry: result.foreignErrors.entrySet()) {
+                    IOUtil.writeUTF(out, entry.getKey());
+                    out.writeInt(entry.getValue().size());
+
+                    for (final OutputReader.ForeignError error: entry.getValue()) {
+                        IOUtil.writeUTF(out, error.message);
+                        out.writeInt(error.line);
+                        out.writeInt(error.endline);
+                        out.writeInt(error.start);
+                        out.writeInt(error.end);
+                        writeNullableUTF(out, error.fix);
+                        writeNullableUTF(out, error.rule);
+                    }
+                }
+            }
+
+            final long previous = file.length();
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            grow(file.length() - previous);
+        } catch (IOException e) {
+            log.info("cannot store stlint result " + file, e);
+
+            if (temp != null) {
+                FileUtil.delete(temp);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        FileUtil.delete(dir);
+        bytes = 0;
+    }
+
+    @Nullable
+    private static String readNullableUTF(@NotNull DataInput in) throws IOException {
+        return in.readBoolean() ? IOUtil.readUTF(in) : null;
+    }
+
+    private static void writeNullableUTF(@NotNull DataOutput out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            IOUtil.writeUTF(out, value);
+        }
+    }
+
+    /**
+     * The path is part of the key because stlint resolves relative imports from it
+     */
+    @NotNull
+    private File getFile(@NotNull LintResultCache.Key key) {
+        final long hash = ContentHash.of(key.path + '\n' + key.contentHash + '\n' + key.contentLength + '\n'
+                + key.configPath + '\n' + key.configHash + '\n' + key.exePath + '\n' + key.version + '\n' + key.dependencyStamp);
+
+        final String name = Long.toHexString(hash);
+
+        return new File(new File(dir, name.substring(0, Math.min(2, name.length()))), name + SUFFIX);
+    }
+
+    private synchronized void grow(long delta) {
+        if (bytes < 0) {
+            bytes = 0;
+
+            for (final File file: listEntries()) {
+                bytes += file.length();
+            }
+        } else {
+            bytes += delta;
+        }
+
+        if (bytes > MAX_BYTES) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        final List<File> entries = listEntries();
+        final long[] modified = new long[entries.size()];
+
+        for (int i = 0; i < modified.length; i++) {
+            modified[i] = entries.get(i).lastModified();
+        }
+
+        final Integer[] order = new Integer[entries.size()];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+
+        for (final int i: order) {
+            if (bytes <= TRIMMED_BYTES) {
+                break;
+            }
+
+            final File file = entries.get(i);
+            final long length = file.length();
+
+            if (FileUtil.delete(file)) {
+                bytes -= length;
+            }
+        }
+    }
+
+    @NotNull
+    private List<File> listEntries() {
+        final List<File> entries = new ArrayList<>();
+        final File[] buckets = dir.listFiles();
+
+        if (buckets == null) {
+            return entries;
+        }
+
+        for (final File bucket: buckets) {
+            final File[] files = bucket.listFiles((parent, name) -> name.endsWith(SUFFIX));
+
+            if (files != null) {
+                entries.addAll(Arrays.asList(files));
+            }
+        }
+
+        return entries;
+    }
+
+    private static void touch(@NotNull File file) {
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            log.debug("cannot touch " + file);
+        }
+    }
+}
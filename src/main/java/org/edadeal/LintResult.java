@@ -0,0 +1,25 @@
+package org.edadeal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one stlint run found: errors in the linted file and, unmapped, errors in the files it imports
+ */
+final class LintResult {
+    @NotNull
+    final Collection<Error> errors;
+    /**
+     * Keyed by the path stlint reported, see {@link OutputReader#getForeignErrors()}
+     */
+    @NotNull
+    final Map<String, List<OutputReader.ForeignError>> foreignErrors;
+
+    LintResult(@NotNull Collection<Error> errors, @NotNull Map<String, List<OutputReader.ForeignError>> foreignErrors) {
+        this.errors = errors;
+        this.foreignErrors = foreignErrors;
+    }
+}
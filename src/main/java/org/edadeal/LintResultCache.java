@@ -0,0 +1,160 @@
+package org.edadeal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * stlint results for texts we have already linted, evicted in LRU order by count and estimated size.
+ */
+final class LintResultCache {
+    private static final int MAX_ENTRIES = 512;
+    private static final long MAX_BYTES = 8L * 1024 * 1024;
+
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final int ERROR_OVERHEAD = 96;
+
+    static final class Key {
+        @NotNull
+        final String path;
+        final long contentHash;
+        final int contentLength;
+        @NotNull
+        final String configPath;
+        final long configHash;
+        @NotNull
+        final String exePath;
+        @NotNull
+        final String version;
+        /**
+         * Summarizes the files this one imports, see {@link StylusImportGraph#getDependencyStamp}
+         */
+        final long dependencyStamp;
+
+        Key(
+                @NotNull String path,
+                long contentHash,
+                int contentLength,
+                @NotNull String configPath,
+                long configHash,
+                @NotNull String exePath,
+                @NotNull String version,
+                long dependencyStamp
+        ) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.contentLength = contentLength;
+            this.configPath = configPath;
+            this.configHash = configHash;
+            this.exePath = exePath;
+            this.version = version;
+            this.dependencyStamp = dependencyStamp;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            return contentHash == key.contentHash
+                    && contentLength == key.contentLength
+                    && configHash == key.configHash
+                    && dependencyStamp == key.dependencyStamp
+                    && path.equals(key.path)
+                    && configPath.equals(key.configPath)
+                    && exePath.equals(key.exePath)
+                    && version.equals(key.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, contentHash, contentLength, configPath, configHash, exePath, version, dependencyStamp);
+        }
+    }
+
+    private static final class Entry {
+        final LintResult result;
+        final long size;
+
+        Entry(LintResult result, long size) {
+            this.result = result;
+            this.size = size;
+        }
+    }
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    @Nullable
+    synchronized LintResult get(@NotNull Key key) {
+        final Entry entry = entries.get(key);
+
+        return entry != null ? entry.result : null;
+    }
+
+    synchronized void put(@NotNull Key key, @NotNull LintResult result) {
+        final Entry entry = new Entry(result, estimateSize(key, result));
+
+        if (entry.size > MAX_BYTES) {
+            return;
+        }
+
+        final Entry previous = entries.put(key, entry);
+
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+
+        bytes += entry.size;
+
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext() && (bytes > MAX_BYTES || entries.size() > MAX_ENTRIES)) {
+            bytes -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private static long estimateSize(@NotNull Key key, @NotNull LintResult result) {
+        long size = ENTRY_OVERHEAD + 2L * (key.path.length() + key.configPath.length() + key.exePath.length());
+
+        for (final Error error: result.errors) {
+            size += ERROR_OVERHEAD + 2L * error.message().length();
+
+            if (error.fix() != null) {
+                size += 2L * error.fix().length();
+            }
+        }
+
+        for (final Map.Entry<String, List<OutputReader.ForeignError>> entry: result.foreignErrors.entrySet()) {
+            size += ENTRY_OVERHEAD + 2L * entry.getKey().length();
+
+            for (final OutputReader.ForeignError error: entry.getValue()) {
+                size += ERROR_OVERHEAD + 2L * error.message.length();
+
+                if (error.fix != null) {
+                    size += 2L * error.fix.length();
+                }
+            }
+        }
+
+        return size;
+    }
+}
@@ -0,0 +1,168 @@
+package org.edadeal;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.registry.Registry;
+import org.edadeal.utils.LintStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits stlint runs from every caller through one bounded gate, the focused editor first.
+ * A queued run of a file is dropped as soon as a run of a newer version of the same file is queued.
+ */
+final class LintScheduler {
+    private static final int POLL_INTERVAL = 20;
+
+    enum Priority {
+        FOCUSED,
+        VISIBLE,
+        BACKGROUND
+    }
+
+    private enum State {
+        WAITING,
+        ADMITTED,
+        SUPERSEDED
+    }
+
+    private static final class Ticket implements Comparable<Ticket> {
+        @Nullable
+        final String file;
+        final long version;
+        @NotNull
+        final Priority priority;
+        final long sequence;
+
+        State state = State.WAITING;
+
+        Ticket(@Nullable String file, long version, @NotNull Priority priority, long sequence) {
+            this.file = file;
+            this.version = version;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(@NotNull Ticket other) {
+            final int byPriority = priority.compareTo(other.priority);
+
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final PriorityQueue<Ticket> waiting = new PriorityQueue<>();
+    private static final AtomicLong lastSequence = new AtomicLong();
+    private static int running;
+
+    private LintScheduler() {
+    }
+
+    static int getMaxConcurrency() {
+        final int configured = Registry.intValue("stlint.max.concurrent.lints", 0);
+
+        return configured > 0 ? configured : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * Runs the job once admitted.
+     *
+     * @param file    runs of the same file coalesce; null for runs that must not be dropped, e.g. autocomplete
+     * @param version document modification stamp the job lints
+     * @throws ProcessCanceledException when the caller was cancelled or a newer version of the file was queued
+     */
+    static <T> T run(@Nullable String file, long version, @NotNull Priority priority, @NotNull Computable<T> job) {
+        final Ticket ticket = new Ticket(file, version, priority, lastSequence.incrementAndGet());
+
+        synchronized (lock) {
+            if (file != null) {
+                supersede(file, version);
+            }
+
+            waiting.add(ticket);
+            dispatch();
+        }
+
+        final long start = System.nanoTime();
+
+        await(ticket);
+
+        LintStats.record(LintStats.Stage.QUEUE, start);
+
+        try {
+            return job.compute();
+        } finally {
+            synchronized (lock) {
+                running--;
+                dispatch();
+            }
+        }
+    }
+
+    private static void supersede(@NotNull String file, long version) {
+        final Iterator<Ticket> iterator = waiting.iterator();
+
+        while (iterator.hasNext()) {
+            final Ticket queued = iterator.next();
+
+            if (file.equals(queued.file) && queued.version < version) {
+                queued.state = State.SUPERSEDED;
+                iterator.remove();
+            }
+        }
+
+        lock.notifyAll();
+    }
+
+    private static void dispatch() {
+        final int max = getMaxConcurrency();
+
+        while (running < max) {
+            final Ticket next = waiting.poll();
+
+            if (next == null) {
+                break;
+            }
+
+            next.state = State.ADMITTED;
+            running++;
+        }
+
+        lock.notifyAll();
+    }
+
+    private static void await(@NotNull Ticket ticket) {
+        synchronized (lock) {
+            try {
+                while (ticket.state == State.WAITING) {
+                    ProgressManager.checkCanceled();
+
+                    try {
+                        lock.wait(POLL_INTERVAL);
+                    } catch (InterruptedException e) {
+                        throw new ProcessCanceledException(e);
+                    }
+                }
+            } catch (ProcessCanceledException e) {
+                if (ticket.state == State.ADMITTED) {
+                    running--;
+                    dispatch();
+                } else {
+                    waiting.remove(ticket);
+                }
+
+                throw e;
+            }
+
+            if (ticket.state == State.SUPERSEDED) {
+                throw new ProcessCanceledException();
+            }
+        }
+    }
+}
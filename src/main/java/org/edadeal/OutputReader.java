@@ -0,0 +1,404 @@
+package org.edadeal;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.TextRange;
+import org.edadeal.utils.LintStats;
+import org.edadeal.utils.StylusLinterRunner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams stlint's json report into {@link Error}s for one file, mapping lines through a {@link LineIndex}.
+ * Message parts are read into a few reused holders instead of a DTO tree.
+ * Parts pointing into other files, e.g. imported ones, are kept unmapped in {@link #getForeignErrors()}.
+ */
+final class OutputReader implements StylusLinterRunner.OutputConsumer {
+    private static final Logger log = Logger.getInstance(OutputReader.class);
+
+    /**
+     * Error position as stlint reported it for a file we do not have the text of here
+     */
+    static final class ForeignError {
+        @NotNull
+        final String message;
+        final int line;
+        final int endline;
+        final int start;
+        final int end;
+        @Nullable
+        final String fix;
+        @Nullable
+        final String rule;
+
+        ForeignError(@NotNull String message, int line, int endline, int start, int end, @Nullable String fix, @Nullable String rule) {
+            this.message = message;
+            this.line = line;
+            this.endline = endline;
+            this.start = start;
+            this.end = end;
+            this.fix = fix;
+            this.rule = rule;
+        }
+
+        @NotNull
+        Error map(@NotNull LineIndex lines) {
+            return OutputReader.map(lines, message, line, endline, start, end, fix, rule);
+        }
+    }
+
+    private static final class Part {
+        String descr;
+        String path;
+        int line;
+        int endline;
+        int start;
+        int end;
+        String fix;
+
+        void reset() {
+            descr = null;
+            path = null;
+            line = 0;
+            endline = 0;
+            start = 0;
+            end = 0;
+            fix = null;
+        }
+    }
+
+    @NotNull
+    private final String path;
+    @NotNull
+    private final LineIndex lines;
+
+    private final List<Error> errors = new ArrayList<>();
+    private final Map<String, List<ForeignError>> foreignErrors = new HashMap<>();
+    private final List<Part> parts = new ArrayList<>();
+    private int partCount;
+    @Nullable
+    private String rule;
+
+    private boolean read;
+    private boolean passed;
+
+    @Nullable
+    private String contentPath;
+    @Nullable
+    private String lastReportedPath;
+    private boolean lastReportedPathMatches;
+
+    OutputReader(@NotNull String path, @NotNull LineIndex lines) {
+        this.path = path;
+        this.lines = lines;
+    }
+
+    @Override
+    public void consume(@NotNull Reader stdout, @Nullable String contentPath) throws IOException {
+        final long start = System.nanoTime();
+
+        try {
+            read(stdout, contentPath);
+        } finally {
+            LintStats.record(LintStats.Stage.PARSE, start);
+        }
+    }
+
+    private void read(@NotNull Reader stdout, @Nullable String contentPath) throws IOException {
+        this.contentPath = contentPath;
+
+        final JsonReader reader = new JsonReader(stdout);
+        reader.setLenient(true);
+
+        try {
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                return;
+            }
+        } catch (EOFException e) {
+            return;
+        }
+
+        read = true;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "passed":
+                    if (reader.peek() == JsonToken.BOOLEAN) {
+                        passed = reader.nextBoolean();
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "errors":
+                    readErrors(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+    }
+
+    /**
+     * @return false when stlint printed nothing
+     */
+    boolean hasOutput() {
+        return read;
+    }
+
+    @NotNull
+    Collection<Error> getErrors() {
+        if (passed || errors.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return errors;
+    }
+
+    /**
+     * @return errors stlint reported against other files, by reported path
+     */
+    @NotNull
+    Map<String, List<ForeignError>> getForeignErrors() {
+        return foreignErrors;
+    }
+
+    private void readErrors(@NotNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            log.error("stylus failed, but shows no errors");
+            return;
+        }
+
+        reader.beginArray();
+
+        while (reader.hasNext()) {
+            partCount = 0;
+            rule = null;
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "message":
+                        readParts(reader);
+                        break;
+                    case "rule":
+                        rule = reader.peek() == JsonToken.STRING ? reader.nextString() : skip(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            emit();
+        }
+
+        reader.endArray();
+    }
+
+    private void readParts(@NotNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+
+        reader.beginArray();
+
+        while (reader.hasNext()) {
+            if (partCount == parts.size()) {
+                parts.add(new Part());
+            }
+
+            final Part part = parts.get(partCount++);
+            part.reset();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "descr":
+                        part.descr = nextString(reader);
+                        break;
+                    case "path":
+                        part.path = nextString(reader);
+                        break;
+                    case "line":
+                        part.line = nextInt(reader);
+                        break;
+                    case "endline":
+                        part.endline = nextInt(reader);
+                        break;
+                    case "start":
+                        part.start = nextInt(reader);
+                        break;
+                    case "end":
+                        part.end = nextInt(reader);
+                        break;
+                    case "fix":
+                        part.fix = readFix(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+        }
+
+        reader.endArray();
+    }
+
+    @Nullable
+    private static String readFix(@NotNull JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        String replace = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("replace")) {
+                replace = nextString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return replace;
+    }
+
+    private void emit() {
+        if (partCount == 0) {
+            log.error("stylus missing message in error");
+            return;
+        }
+
+        final Part firstPart = parts.get(0);
+        final boolean own = matches(firstPart.path);
+
+        final StringBuilder errorMessageBuilder = new StringBuilder(String.valueOf(firstPart.descr));
+
+        for (int i = 1; i < partCount; i++) {
+            final Part messagePart = parts.get(i);
+            if (messagePart.path == null || messagePart.path.isEmpty()) {
+                errorMessageBuilder.append(": ");
+            } else {
+                errorMessageBuilder.append(" ");
+            }
+            errorMessageBuilder.append(messagePart.descr);
+        }
+
+        final String errorMessage = errorMessageBuilder.toString();
+
+        if (!own) {
+            log.info("error of first message part path " + firstPart.path + " does not belong to file path " + path);
+        }
+
+        for (int i = 0; i < partCount; i++) {
+            final Part part = parts.get(i);
+
+            if (part.path == null || part.path.isEmpty()) {
+                // skip part of error message that has no file/line reference
+                continue;
+            }
+            if (!matches(part.path)) {
+                // part of error message that refers to content in another file, kept for that file
+                if (new File(part.path).isAbsolute()) {
+                    foreignErrors.computeIfAbsent(part.path, key -> new ArrayList<>()).add(
+                            new ForeignError(errorMessage, part.line, part.endline, part.start, part.end, part.fix, rule)
+                    );
+                }
+                continue;
+            }
+            if (!own) {
+                continue;
+            }
+
+            errors.add(map(lines, errorMessage, part.line, part.endline, part.start, part.end, part.fix, rule));
+        }
+    }
+
+    @NotNull
+    static Error map(
+            @NotNull LineIndex lines,
+            @NotNull String message,
+            int line,
+            int endline,
+            int start,
+            int end,
+            @Nullable String fix,
+            @Nullable String rule
+    ) {
+        final int lineStartOffset = lines.getLineStartOffset(TypeCheck.remapLine(line, lines.getLineCount()));
+        final int lineEndOffset = lines.getLineStartOffset(TypeCheck.remapLine(endline, lines.getLineCount()));
+
+        return new Error(
+                message,
+                TextRange.create(lineStartOffset + start - 1, lineEndOffset + end),
+                fix,
+                rule
+        );
+    }
+
+    private boolean matches(@Nullable String reportedPath) {
+        if (reportedPath == null) {
+            return false;
+        }
+
+        // all parts of a report usually carry the same path string, so normalize it once
+        if (!reportedPath.equals(lastReportedPath)) {
+            lastReportedPath = reportedPath;
+            lastReportedPathMatches = !TypeCheck.pathIsNotEqual(path, contentPath, reportedPath);
+        }
+
+        return lastReportedPathMatches;
+    }
+
+    @Nullable
+    private static String skip(@NotNull JsonReader reader) throws IOException {
+        reader.skipValue();
+        return null;
+    }
+
+    @Nullable
+    private static String nextString(@NotNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        return reader.nextString();
+    }
+
+    private static int nextInt(@NotNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+
+        return reader.nextInt();
+    }
+}
@@ -0,0 +1,62 @@
+package org.edadeal;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.Computable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Concurrent calls with the same key share one computation; the first caller runs it, the others wait for its result.
+ * When the running caller fails or is cancelled, a waiting one takes over.
+ */
+final class SingleFlight<K, V> {
+    private static final int POLL_INTERVAL = 20;
+
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    V run(@NotNull K key, @NotNull Computable<V> job) {
+        while (true) {
+            final CompletableFuture<V> own = new CompletableFuture<>();
+            final CompletableFuture<V> flight = flights.putIfAbsent(key, own);
+
+            if (flight == null) {
+                try {
+                    final V value = job.compute();
+                    own.complete(value);
+                    return value;
+                } catch (RuntimeException | java.lang.Error e) {
+                    own.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    flights.remove(key, own);
+                }
+            }
+
+            try {
+                return await(flight);
+            } catch (ExecutionException | CancellationException e) {
+                // the running caller gave up, try to run it ourselves
+            }
+        }
+    }
+
+    private static <V> V await(@NotNull CompletableFuture<V> flight) throws ExecutionException {
+        while (true) {
+            ProgressManager.checkCanceled();
+
+            try {
+                return flight.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ignored) {
+            } catch (InterruptedException e) {
+                throw new ExecutionException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.edadeal;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lints files for batch inspection on a bounded set of worker slots, each backed by its own stlint daemon.
+ */
+final class StLintBatchLinter {
+    private static final int POLL_INTERVAL = 20;
+
+    private static volatile Slots slots;
+
+    private static final class Slots {
+        final int parallelism;
+        final BlockingQueue<Integer> free;
+
+        Slots(int parallelism) {
+            this.parallelism = parallelism;
+            this.free = new ArrayBlockingQueue<>(parallelism);
+
+            // slot 0 is left to the editor
+            for (int i = 1; i <= parallelism; i++) {
+                free.add(i);
+            }
+        }
+    }
+
+    private StLintBatchLinter() {
+    }
+
+    static int getParallelism() {
+        final int configured = Registry.intValue("stlint.batch.parallelism", 0);
+
+        return configured > 0 ? configured : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    @NotNull
+    static Collection<Error> errors(@NotNull PsiFile file, @NotNull Document document) {
+        final Slots current = getSlots();
+        final int slot = acquire(current);
+
+        try {
+            return TypeCheck.errors(file, document, slot, LintScheduler.Priority.BACKGROUND);
+        } finally {
+            current.free.add(slot);
+        }
+    }
+
+    @NotNull
+    private static Slots getSlots() {
+        final int parallelism = getParallelism();
+
+        Slots current = slots;
+
+        if (current == null || current.parallelism != parallelism) {
+            synchronized (StLintBatchLinter.class) {
+                current = slots;
+
+                if (current == null || current.parallelism != parallelism) {
+                    current = new Slots(parallelism);
+                    slots = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    private static int acquire(@NotNull Slots current) {
+        while (true) {
+            ProgressManager.checkCanceled();
+
+            try {
+                final Integer slot = current.free.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+                if (slot != null) {
+                    return slot;
+                }
+            } catch (InterruptedException e) {
+                ProgressManager.checkCanceled();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.edadeal;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Autocomplete requests run on a pooled thread; the completion thread only waits for them up to a deadline.
+ * Recent requests are remembered, so a completion restarted after a late answer picks it up at once.
+ */
+final class StLintCompletions {
+    private static final int MAX_REQUESTS = 16;
+    private static final int POLL_INTERVAL = 10;
+
+    private static final Map<String, CompletableFuture<Collection<Suggest>>> requests = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Collection<Suggest>>> eldest) {
+            return size() > MAX_REQUESTS;
+        }
+    };
+
+    private StLintCompletions() {
+    }
+
+    static int getDeadline() {
+        return Registry.intValue("stlint.completion.deadline.ms", 150);
+    }
+
+    @NotNull
+    static CompletableFuture<Collection<Suggest>> request(
+            @NotNull TypeCheck.TypeDataParams params,
+            int offset,
+            int lineStartOffset,
+            @NotNull String text
+    ) {
+        final String key = params.path + '\n' + offset + '\n' + lineStartOffset + '\n' + text;
+
+        synchronized (requests) {
+            CompletableFuture<Collection<Suggest>> future = requests.get(key);
+
+            if (future == null || future.isCompletedExceptionally() || future.isCancelled()) {
+                future = CompletableFuture.supplyAsync(
+                        () -> TypeCheck.autoCompletes(params, offset, lineStartOffset, text),
+                        AppExecutorUtil.getAppExecutorService()
+                );
+                requests.put(key, future);
+            }
+
+            return future;
+        }
+    }
+
+    /**
+     * @return null when the request has not finished before the deadline
+     */
+    @Nullable
+    static Collection<Suggest> await(@NotNull CompletableFuture<Collection<Suggest>> future, int deadlineInMilliseconds) {
+        final long deadline = System.currentTimeMillis() + deadlineInMilliseconds;
+
+        while (true) {
+            try {
+                return future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                ProgressManager.checkCanceled();
+
+                if (System.currentTimeMillis() >= deadline) {
+                    return null;
+                }
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                return Collections.emptyList();
+            }
+        }
+    }
+}
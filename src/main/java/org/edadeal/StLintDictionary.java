@@ -0,0 +1,181 @@
+package org.edadeal;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.edadeal.utils.StlintPackage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * stlint suggestion vocabulary, fetched once per stlint package: property names on first use,
+ * values of a property the first time that property is completed. Lookups are answered from prefix tries.
+ */
+final class StLintDictionary {
+    private static final Logger log = Logger.getInstance(StLintDictionary.class);
+
+    private static final String PROPERTIES = "";
+    /**
+     * Document the property names are asked for: a blank line inside a rule. Never empty, as without text
+     * the runner drops --content and stlint would complete against whatever the linted file holds on disk.
+     */
+    private static final String PROPERTIES_QUERY = "  ";
+    private static final int MAX_MISSES = 256;
+
+    private static final Map<String, StLintDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    static final class Context {
+        @NotNull
+        final String property;
+        @NotNull
+        final String prefix;
+
+        Context(@NotNull String property, @NotNull String prefix) {
+            this.property = property;
+            this.prefix = prefix;
+        }
+    }
+
+    @NotNull
+    private final String packageKey;
+    private final Map<String, CompletableFuture<SuggestionTrie>> tries = new ConcurrentHashMap<>();
+    /**
+     * Prefixes per property stlint was already asked about because the vocabulary had nothing for them
+     */
+    private final Map<String, Set<String>> misses = new ConcurrentHashMap<>();
+
+    private StLintDictionary(@NotNull String packageKey) {
+        this.packageKey = packageKey;
+    }
+
+    /**
+     * @return null while the vocabulary for this context is loading, or the first time none of it matches the prefix,
+     * callers then ask stlint directly: its autocomplete may know values the vocabulary query did not list.
+     * Longer prefixes of a miss are answered with nothing rather than another stlint run per keystroke.
+     */
+    @Nullable
+    static Collection<Suggest> suggest(@NotNull TypeCheck.TypeDataParams params, @NotNull String line) {
+        final StlintPackage stlintPackage = StlintPackage.forExe(params.exePath);
+        final String packageKey = stlintPackage.dir + '\n' + stlintPackage.version;
+
+        final StLintDictionary dictionary = dictionaries.compute(params.exePath, (exe, current) ->
+                current != null && current.packageKey.equals(packageKey) ? current : new StLintDictionary(packageKey)
+        );
+
+        final Context context = parse(line);
+        final SuggestionTrie trie = dictionary.getTrie(params, context.property).getNow(null);
+
+        if (trie == null) {
+            return null;
+        }
+
+        final List<String> titles = trie.find(context.prefix);
+
+        if (titles.isEmpty()) {
+            return dictionary.miss(context) ? null : Collections.emptyList();
+        }
+
+        final List<Suggest> suggests = new ArrayList<>(titles.size());
+
+        for (final String title: titles) {
+            suggests.add(new Suggest(title));
+        }
+
+        return suggests;
+    }
+
+    @NotNull
+    static Context parse(@NotNull String line) {
+        int start = 0;
+
+        while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+
+        int end = start;
+
+        while (end < line.length() && line.charAt(end) != ':' && !Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+
+        if (end == line.length()) {
+            return new Context(PROPERTIES, line.substring(start));
+        }
+
+        int valueStart = line.length();
+
+        while (valueStart > end && " \t:,(".indexOf(line.charAt(valueStart - 1)) < 0) {
+            valueStart--;
+        }
+
+        return new Context(line.substring(start, end), line.substring(valueStart));
+    }
+
+    /**
+     * @return true when stlint is worth asking: no shorter prefix of this one came up empty before
+     */
+    private boolean miss(@NotNull Context context) {
+        final Set<String> prefixes = misses.computeIfAbsent(context.property, property -> new HashSet<>());
+
+        synchronized (prefixes) {
+            for (final String prefix: prefixes) {
+                if (context.prefix.startsWith(prefix)) {
+                    return false;
+                }
+            }
+
+            if (prefixes.size() >= MAX_MISSES) {
+                prefixes.clear();
+            }
+
+            prefixes.add(context.prefix);
+
+            return true;
+        }
+    }
+
+    @NotNull
+    private CompletableFuture<SuggestionTrie> getTrie(@NotNull TypeCheck.TypeDataParams params, @NotNull String property) {
+        CompletableFuture<SuggestionTrie> future = tries.get(property);
+
+        if (future != null) {
+            return future;
+        }
+
+        final CompletableFuture<SuggestionTrie> loading = new CompletableFuture<>();
+        future = tries.putIfAbsent(property, loading);
+
+        if (future != null) {
+            return future;
+        }
+
+        final String query = property.equals(PROPERTIES) ? PROPERTIES_QUERY : property + ": ";
+
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            try {
+                final List<String> titles = new ArrayList<>();
+
+                for (final Suggest suggest: TypeCheck.autoCompletes(params, query.length(), 0, query)) {
+                    titles.add(suggest.title);
+                }
+
+                loading.complete(new SuggestionTrie(titles));
+            } catch (Throwable e) {
+                log.info("could not load stlint suggestions for '" + property + "'", e);
+                tries.remove(property, loading);
+                loading.completeExceptionally(e);
+            }
+        });
+
+        return loading;
+    }
+}
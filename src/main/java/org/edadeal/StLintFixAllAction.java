@@ -0,0 +1,214 @@
+package org.edadeal;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lints every Stylus file of the project on the batch workers and applies stlint's fixes,
+ * a batch of files per write command instead of a command per fix.
+ */
+public class StLintFixAllAction extends AnAction {
+    private static final Logger log = Logger.getInstance(StLintFixAllAction.class);
+    private static final String TITLE = "Fix stlint Problems";
+    private static final int BATCH_SIZE = 50;
+    private static final int POLL_INTERVAL = 50;
+
+    /**
+     * Fixes for one file, valid while its document keeps the stamp it was linted at
+     */
+    private static final class Linted {
+        @Nullable
+        final Document document;
+        final long stamp;
+        @NotNull
+        final Collection<Error> errors;
+
+        Linted(@Nullable Document document, long stamp, @NotNull Collection<Error> errors) {
+            this.document = document;
+            this.stamp = stamp;
+            this.errors = errors;
+        }
+    }
+
+    @Override
+    public void update(@NotNull AnActionEvent e) {
+        e.getPresentation().setEnabled(e.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        final Project project = e.getProject();
+
+        if (project == null) {
+            return;
+        }
+
+        new FixAllTask(project).queue();
+    }
+
+    private static final class FixAllTask extends Task.Backgroundable {
+        @NotNull
+        private final Project project;
+
+        private int files;
+        private int fixedFiles;
+        private int fixes;
+
+        FixAllTask(@NotNull Project project) {
+            super(project, TITLE, true);
+            this.project = project;
+        }
+
+        @Override
+        public void run(@NotNull ProgressIndicator indicator) {
+            final List<VirtualFile> stylusFiles = StLintProjectIndex.collectFiles(project);
+            final BlockingQueue<Linted> results = new LinkedBlockingQueue<>();
+            final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                    "StLint fix all",
+                    StLintBatchLinter.getParallelism()
+            );
+
+            files = stylusFiles.size();
+            indicator.setIndeterminate(false);
+
+            for (final VirtualFile file: stylusFiles) {
+                executor.execute(() -> results.add(lint(project, file, indicator)));
+            }
+
+            final List<Linted> batch = new ArrayList<>(BATCH_SIZE);
+
+            try {
+                for (int done = 0; done < files; ) {
+                    indicator.checkCanceled();
+
+                    final Linted linted = results.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+
+                    if (linted == null) {
+                        continue;
+                    }
+
+                    done++;
+                    indicator.setFraction((double) done / files);
+                    indicator.setText2(done + " of " + files + " files linted");
+
+                    if (StLintFixes.count(linted.errors) > 0) {
+                        batch.add(linted);
+                    }
+
+                    if (batch.size() >= BATCH_SIZE) {
+                        apply(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new ProcessCanceledException(e);
+            } finally {
+                // fixes already linted are still worth applying when the rest is cancelled
+                apply(batch);
+            }
+        }
+
+        @NotNull
+        private static Linted lint(@NotNull Project project, @NotNull VirtualFile file, @NotNull ProgressIndicator indicator) {
+            if (indicator.isCanceled()) {
+                return new Linted(null, 0, Collections.emptyList());
+            }
+
+            try {
+                return ProgressManager.getInstance().runProcess(() -> {
+                    final PsiFile psiFile = ReadAction.compute(() -> file.isValid() ? PsiManager.getInstance(project).findFile(file) : null);
+                    final Document document = ReadAction.compute(() -> file.isValid() ? FileDocumentManager.getInstance().getDocument(file) : null);
+
+                    if (psiFile == null || document == null) {
+                        return new Linted(null, 0, Collections.emptyList());
+                    }
+
+                    final long stamp = document.getModificationStamp();
+
+                    return new Linted(document, stamp, StLintBatchLinter.errors(psiFile, document));
+                }, indicator);
+            } catch (ProcessCanceledException e) {
+                return new Linted(null, 0, Collections.emptyList());
+            } catch (RuntimeException e) {
+                log.info("stlint fix all could not lint " + file, e);
+                return new Linted(null, 0, Collections.emptyList());
+            }
+        }
+
+        private void apply(@NotNull List<Linted> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            final List<Linted> current = new ArrayList<>(batch);
+            batch.clear();
+
+            ApplicationManager.getApplication().invokeAndWait(() -> {
+                if (project.isDisposed()) {
+                    return;
+                }
+
+                WriteCommandAction.writeCommandAction(project).withName(TITLE).run(() -> {
+                    final PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+
+                    for (final Linted linted: current) {
+                        // edited since it was linted, the offsets no longer hold
+                        if (linted.document == null || linted.document.getModificationStamp() != linted.stamp) {
+                            continue;
+                        }
+
+                        final int applied = StLintFixes.apply(linted.document, linted.errors);
+
+                        if (applied > 0) {
+                            documentManager.commitDocument(linted.document);
+                            fixedFiles++;
+                            fixes += applied;
+                        }
+                    }
+                });
+            }, ModalityState.defaultModalityState());
+        }
+
+        @Override
+        public void onFinished() {
+            log.info("stlint fix all applied " + fixes + " fixes to " + fixedFiles + " of " + files + " files");
+        }
+
+        @Override
+        public void onSuccess() {
+            Messages.showInfoMessage(
+                    project,
+                    fixes + " fixes applied to " + fixedFiles + " of " + files + " Stylus files",
+                    TITLE
+            );
+        }
+    }
+}
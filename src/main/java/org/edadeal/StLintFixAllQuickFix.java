@@ -0,0 +1,65 @@
+package org.edadeal;
+
+import com.intellij.codeInsight.intention.impl.BaseIntentionAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * Applies every stlint fix of the file in a single command, offered next to each single fix.
+ * Only available while the document is still the one the fixes were reported for.
+ */
+class StLintFixAllQuickFix extends BaseIntentionAction {
+    @NotNull
+    private final Document document;
+    @NotNull
+    private final Collection<Error> errors;
+    private final long stamp;
+
+    StLintFixAllQuickFix(@NotNull Document document, @NotNull Collection<Error> errors) {
+        this.document = document;
+        this.errors = errors;
+        this.stamp = document.getModificationStamp();
+    }
+
+    @NotNull
+    @Override
+    public String getText() {
+        return "Fix all stlint problems in file";
+    }
+
+    @NotNull
+    @Override
+    public String getFamilyName() {
+        return "Stylus fixes";
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project, Editor editor, PsiFile file) {
+        return document.getModificationStamp() == stamp;
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return false;
+    }
+
+    @Override
+    public void invoke(@NotNull Project project, Editor editor, PsiFile file) throws IncorrectOperationException {
+        if (document.getModificationStamp() != stamp) {
+            return;
+        }
+
+        WriteCommandAction.writeCommandAction(project).withName(getText()).run(() -> {
+            StLintFixes.apply(document, errors);
+            PsiDocumentManager.getInstance(project).commitDocument(document);
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package org.edadeal;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Applies the fixes stlint reported for a document in one go.
+ */
+final class StLintFixes {
+    private static final Comparator<Error> FROM_THE_END = Comparator
+            .comparingInt((Error error) -> error.range().getStartOffset())
+            .thenComparingInt(error -> error.range().getEndOffset())
+            .reversed();
+
+    private StLintFixes() {
+    }
+
+    static int count(@NotNull Collection<Error> errors) {
+        int count = 0;
+
+        for (final Error error: errors) {
+            if (error.fix() != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Replaces from the end of the document backwards, so earlier ranges stay valid without remapping.
+     * A fix overlapping one already applied is skipped. Must run in a write action.
+     *
+     * @return number of fixes applied
+     */
+    static int apply(@NotNull Document document, @NotNull Collection<Error> errors) {
+        final List<Error> fixable = new ArrayList<>();
+
+        for (final Error error: errors) {
+            if (error.fix() != null) {
+                fixable.add(error);
+            }
+        }
+
+        fixable.sort(FROM_THE_END);
+
+        int applied = 0;
+        int limit = document.getTextLength();
+
+        for (final Error error: fixable) {
+            final TextRange range = error.range();
+
+            if (range.getStartOffset() < 0 || range.getEndOffset() > limit) {
+                continue;
+            }
+
+            document.replaceString(range.getStartOffset(), range.getEndOffset(), error.fix());
+
+            limit = range.getStartOffset();
+            applied++;
+        }
+
+        return applied;
+    }
+}
@@ -22,13 +22,13 @@ public class StLintInspection extends LocalInspectionTool implements BatchSuppre
 
 
     public ProblemDescriptor[] checkFile(@NotNull PsiFile file, @NotNull final InspectionManager manager, final boolean isOnTheFly) {
-        return ExternalAnnotatorInspectionVisitor.checkFileWithExternalAnnotator(file, manager, isOnTheFly, new StylusExternalAnnotator());
+        return ExternalAnnotatorInspectionVisitor.checkFileWithExternalAnnotator(file, manager, isOnTheFly, new StylusExternalAnnotator(!isOnTheFly));
     }
 
     @NotNull
     @Override
     public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
-        return new ExternalAnnotatorInspectionVisitor(holder, new StylusExternalAnnotator(), isOnTheFly);
+        return new ExternalAnnotatorInspectionVisitor(holder, new StylusExternalAnnotator(!isOnTheFly), isOnTheFly);
     }
 
 
@@ -2,16 +2,20 @@ package org.edadeal;
 
 // https://github.com/rainerosion/RainGitEmoji/blob/06adb7cfe0b72fd382acf0bc55f4b70bc860855f/src/cn/rainss/emoji/RainsGitEmojiMain.java
 // https://github.com/ant-druha/AppleScript-IDEA/blob/85c5197c07c005c590e249318fea9e69b2755131/src/main/java/com/intellij/plugin/applescript/lang/ide/completion/CommandCompletionContributor.java
+import com.intellij.codeInsight.AutoPopupController;
 import com.intellij.codeInsight.completion.*;
 import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.util.ProcessingContext;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static com.intellij.patterns.PlatformPatterns.psiElement;
 
@@ -27,10 +31,6 @@ public class StLintModuleCompletionContributor extends CompletionContributor {
                             @NotNull ProcessingContext context,
                             @NotNull CompletionResultSet resultSet
                     ) {
-                        if (TypeCheck.isNotStylusFile(Objects.requireNonNull(parameters.getOriginalFile().getVirtualFile().getCanonicalPath()))) {
-                            return;
-                        }
-
                         int offset = parameters.getEditor().getCaretModel().getOffset();
 
                         Document document = parameters.getEditor().getDocument();
@@ -39,20 +39,80 @@ public class StLintModuleCompletionContributor extends CompletionContributor {
 
                         String text = document.getText(TextRange.create(lineStartOffset, offset));
 
+                        if (!StylusCompletionContext.classify(parameters.getPosition(), text).canSuggest()) {
+                            return;
+                        }
+
                         log.info("Get Autocomplete for: " + offset + "--" + lineStartOffset + "---" + text);
 
-                        Collection<Suggest> suggests = TypeCheck.autoCompletes(
-                                parameters.getOriginalFile(),
+                        final TypeCheck.TypeDataParams params = TypeCheck.checkCommon(parameters.getOriginalFile());
+
+                        if (params == null) {
+                            return;
+                        }
+
+                        final Collection<Suggest> known = StLintDictionary.suggest(params, text);
+
+                        if (known != null) {
+                            addSuggests(resultSet, known);
+                            return;
+                        }
+
+                        final CompletableFuture<Collection<Suggest>> request = StLintCompletions.request(
+                                params,
                                 offset,
                                 lineStartOffset,
                                 text
                         );
 
-                        for (final Suggest suggest : suggests) {
-                            resultSet.addElement(LookupElementBuilder.create(suggest.title));
+                        Collection<Suggest> suggests = StLintCompletions.await(request, StLintCompletions.getDeadline());
+
+                        if (suggests == null) {
+                            log.info("stlint autocomplete missed the deadline, results will restart completion");
+                            resultSet.restartCompletionOnAnyPrefixChange();
+                            restartWhenDone(request, parameters.getEditor(), offset);
+                            return;
                         }
+
+                        addSuggests(resultSet, suggests);
                     }
                 }
         );
     }
+
+    private static void addSuggests(@NotNull CompletionResultSet resultSet, @NotNull Collection<Suggest> suggests) {
+        for (final Suggest suggest : suggests) {
+            resultSet.addElement(LookupElementBuilder.create(suggest.title));
+        }
+    }
+
+    /**
+     * Re-triggers completion at the same caret when a late answer arrives, it is then served from StLintCompletions
+     */
+    private static void restartWhenDone(
+            @NotNull CompletableFuture<Collection<Suggest>> request,
+            @NotNull Editor editor,
+            int offset
+    ) {
+        final long stamp = editor.getDocument().getModificationStamp();
+
+        request.thenAccept(suggests -> {
+            if (suggests.isEmpty()) {
+                return;
+            }
+
+            ApplicationManager.getApplication().invokeLater(() -> {
+                final Project project = editor.getProject();
+
+                if (project == null
+                        || editor.isDisposed()
+                        || editor.getDocument().getModificationStamp() != stamp
+                        || editor.getCaretModel().getOffset() != offset) {
+                    return;
+                }
+
+                AutoPopupController.getInstance(project).scheduleAutoPopup(editor);
+            });
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package org.edadeal;
+
+import com.intellij.analysis.problemsView.FileProblem;
+import com.intellij.analysis.problemsView.ProblemsProvider;
+import com.intellij.codeHighlighting.HighlightDisplayLevel;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+
+/**
+ * An stlint error of a file linted in the background, as listed in the Problems view
+ */
+final class StLintProblem implements FileProblem {
+    @NotNull
+    private final ProblemsProvider provider;
+    @NotNull
+    private final VirtualFile file;
+    @NotNull
+    final Error error;
+    private final int line;
+    private final int column;
+
+    StLintProblem(@NotNull ProblemsProvider provider, @NotNull VirtualFile file, @NotNull Error error, int line, int column) {
+        this.provider = provider;
+        this.file = file;
+        this.error = error;
+        this.line = line;
+        this.column = column;
+    }
+
+    @NotNull
+    @Override
+    public ProblemsProvider getProvider() {
+        return provider;
+    }
+
+    @NotNull
+    @Override
+    public VirtualFile getFile() {
+        return file;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getColumn() {
+        return column;
+    }
+
+    @NotNull
+    @Override
+    public String getText() {
+        return error.message();
+    }
+
+    @Nullable
+    @Override
+    public String getGroup() {
+        return "stlint";
+    }
+
+    @Nullable
+    @Override
+    public String getDescription() {
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public Icon getIcon() {
+        return HighlightDisplayLevel.ERROR.getIcon();
+    }
+}
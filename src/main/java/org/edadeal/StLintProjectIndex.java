@@ -0,0 +1,351 @@
+package org.edadeal;
+
+import com.intellij.analysis.problemsView.ProblemsCollector;
+import com.intellij.analysis.problemsView.ProblemsProvider;
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.ide.PowerSaveMode;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.problems.WolfTheProblemSolver;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.edadeal.settings.StLintUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Lints every Stylus file in the content roots in the background and reports the ones with errors to the Problems view.
+ * Opt-in through the stlint.background.index registry key; pauses in power save mode.
+ */
+public final class StLintProjectIndex implements ProblemsProvider {
+    private static final Logger log = Logger.getInstance(StLintProjectIndex.class);
+    private static final String EXTENSION = "styl";
+    /**
+     * Files with errors kept in the Problems view; the least recently linted ones drop out beyond this
+     */
+    private static final int MAX_FILES = 1000;
+
+    public static final class Startup implements StartupActivity.Background {
+        @Override
+        public void runActivity(@NotNull Project project) {
+            if (isEnabled()) {
+                getInstance(project).scheduleAll();
+            }
+        }
+    }
+
+    private final Project project;
+    private final ExecutorService executor;
+    private final Map<VirtualFile, List<StLintProblem>> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<VirtualFile> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Parent of every lint queued until the next pause, each of which runs under its own child
+     */
+    private volatile ProgressIndicator indicator = new EmptyProgressIndicator();
+    private volatile boolean paused;
+
+    public StLintProjectIndex(@NotNull Project project) {
+        this.project = project;
+        this.executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "StLint project index",
+                Math.max(1, StLintBatchLinter.getParallelism() / 2)
+        );
+
+        final MessageBusConnection connection = project.getMessageBus().connect(this);
+
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                if (isEnabled()) {
+                    onChanges(events);
+                }
+            }
+        });
+
+        connection.subscribe(PowerSaveMode.TOPIC, () -> {
+            if (PowerSaveMode.isEnabled()) {
+                pause();
+            } else if (isEnabled()) {
+                scheduleAll();
+            }
+        });
+    }
+
+    @NotNull
+    public static StLintProjectIndex getInstance(@NotNull Project project) {
+        return project.getService(StLintProjectIndex.class);
+    }
+
+    static boolean isEnabled() {
+        return Registry.is("stlint.background.index");
+    }
+
+    @NotNull
+    @Override
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return null when the background lint found no errors in the file, has not linted it yet or dropped it
+     */
+    @Nullable
+    Collection<Error> getErrors(@NotNull VirtualFile file) {
+        final List<StLintProblem> problems;
+
+        synchronized (results) {
+            problems = results.get(file);
+        }
+
+        if (problems == null) {
+            return null;
+        }
+
+        final List<Error> errors = new ArrayList<>(problems.size());
+
+        for (final StLintProblem problem: problems) {
+            errors.add(problem.error);
+        }
+
+        return errors;
+    }
+
+    void scheduleAll() {
+        paused = PowerSaveMode.isEnabled();
+
+        if (paused) {
+            return;
+        }
+
+        final List<VirtualFile> files = collectFiles(project);
+
+        log.info("stlint background index queued " + files.size() + " files");
+
+        files.forEach(this::schedule);
+    }
+
+    /**
+     * @return Stylus files in the content roots of the project
+     */
+    @NotNull
+    static List<VirtualFile> collectFiles(@NotNull Project project) {
+        final List<VirtualFile> files = new ArrayList<>();
+
+        ReadAction.run(() -> {
+            if (project.isDisposed()) {
+                return;
+            }
+
+            ProjectFileIndex.getInstance(project).iterateContent(file -> {
+                if (!file.isDirectory() && EXTENSION.equals(file.getExtension())) {
+                    files.add(file);
+                }
+                return true;
+            });
+        });
+
+        return files;
+    }
+
+    void schedule(@NotNull VirtualFile file) {
+        if (paused || !pending.add(file)) {
+            return;
+        }
+
+        final ProgressIndicator session = indicator;
+
+        executor.execute(() -> {
+            pending.remove(file);
+
+            if (session.isCanceled() || project.isDisposed() || !file.isValid()) {
+                return;
+            }
+
+            try {
+                // cancelling one lint must not stop the session, pause() and dispose() cancel the session itself
+                ProgressManager.getInstance().runProcess(() -> lint(file), new SensitiveProgressWrapper(session));
+            } catch (ProcessCanceledException e) {
+                if (!session.isCanceled()) {
+                    // superseded by a run with newer content, lint the file again to pick that content up
+                    schedule(file);
+                }
+            } catch (RuntimeException e) {
+                log.info("stlint background lint failed for " + file, e);
+            }
+        });
+    }
+
+    private void lint(@NotNull VirtualFile file) {
+        final PsiFile psiFile = ReadAction.compute(() -> file.isValid() ? PsiManager.getInstance(project).findFile(file) : null);
+        final Document document = ReadAction.compute(() -> file.isValid() ? FileDocumentManager.getInstance().getDocument(file) : null);
+
+        if (psiFile == null || document == null) {
+            return;
+        }
+
+        final Collection<Error> errors = StLintBatchLinter.errors(psiFile, document);
+
+        publish(file, ReadAction.compute(() -> toProblems(file, document, errors)));
+    }
+
+    @NotNull
+    private List<StLintProblem> toProblems(@NotNull VirtualFile file, @NotNull Document document, @NotNull Collection<Error> errors) {
+        final List<StLintProblem> problems = new ArrayList<>(errors.size());
+
+        for (final Error error: errors) {
+            // offsets refer to the linted text, the document may have moved on since
+            final int offset = Math.max(0, Math.min(error.range().getStartOffset(), document.getTextLength()));
+            final int line = document.getLineNumber(offset);
+
+            problems.add(new StLintProblem(this, file, error, line, offset - document.getLineStartOffset(line)));
+        }
+
+        return problems;
+    }
+
+    private void publish(@NotNull VirtualFile file, @NotNull List<StLintProblem> problems) {
+        final List<StLintProblem> previous;
+        final Map<VirtualFile, List<StLintProblem>> evicted = new HashMap<>();
+
+        synchronized (results) {
+            previous = problems.isEmpty() ? results.remove(file) : results.put(file, problems);
+
+            final Iterator<Map.Entry<VirtualFile, List<StLintProblem>>> eldest = results.entrySet().iterator();
+
+            while (results.size() > MAX_FILES && eldest.hasNext()) {
+                final Map.Entry<VirtualFile, List<StLintProblem>> entry = eldest.next();
+                evicted.put(entry.getKey(), entry.getValue());
+                eldest.remove();
+            }
+        }
+
+        final ProblemsCollector collector = project.getService(ProblemsCollector.class);
+
+        if (collector != null) {
+            if (previous != null) {
+                previous.forEach(collector::problemDisappeared);
+            }
+
+            problems.forEach(collector::problemAppeared);
+        }
+
+        final WolfTheProblemSolver problemSolver = WolfTheProblemSolver.getInstance(project);
+
+        if (problems.isEmpty()) {
+            problemSolver.clearProblemsFromExternalSource(file, this);
+        } else {
+            problemSolver.reportProblemsFromExternalSource(file, this);
+        }
+
+        evicted.forEach(this::withdraw);
+    }
+
+    private void forget(@NotNull VirtualFile file) {
+        final List<StLintProblem> problems;
+
+        synchronized (results) {
+            problems = results.remove(file);
+        }
+
+        if (problems != null) {
+            withdraw(file, problems);
+        }
+    }
+
+    private void forgetInvalid() {
+        final Map<VirtualFile, List<StLintProblem>> invalid = new HashMap<>();
+
+        synchronized (results) {
+            results.entrySet().removeIf(entry -> !entry.getKey().isValid() && invalid.put(entry.getKey(), entry.getValue()) == null);
+        }
+
+        invalid.forEach(this::withdraw);
+    }
+
+    private void withdraw(@NotNull VirtualFile file, @NotNull List<StLintProblem> problems) {
+        final ProblemsCollector collector = project.getService(ProblemsCollector.class);
+
+        if (collector != null) {
+            problems.forEach(collector::problemDisappeared);
+        }
+
+        WolfTheProblemSolver.getInstance(project).clearProblemsFromExternalSource(file, this);
+    }
+
+    private void onChanges(@NotNull List<? extends VFileEvent> events) {
+        boolean configChanged = false;
+
+        for (final VFileEvent event: events) {
+            final VirtualFile file = event.getFile();
+
+            if (file == null) {
+                continue;
+            }
+
+            if (event instanceof VFileDeleteEvent) {
+                if (file.isDirectory()) {
+                    forgetInvalid();
+                } else {
+                    forget(file);
+                }
+                continue;
+            }
+
+            if (StLintUtil.isConfigFile(file)) {
+                configChanged = true;
+            } else if (EXTENSION.equals(file.getExtension()) && ReadAction.compute(() -> isInContent(file))) {
+                schedule(file);
+            }
+        }
+
+        if (configChanged) {
+            AppExecutorUtil.getAppExecutorService().execute(this::scheduleAll);
+        }
+    }
+
+    private boolean isInContent(@NotNull VirtualFile file) {
+        return !project.isDisposed() && file.isValid() && ProjectFileIndex.getInstance(project).isInContent(file);
+    }
+
+    private void pause() {
+        paused = true;
+        indicator.cancel();
+        indicator = new EmptyProgressIndicator();
+        pending.clear();
+    }
+
+    @Override
+    public void dispose() {
+        // queued tasks see the cancelled indicator and return at once
+        pause();
+    }
+}
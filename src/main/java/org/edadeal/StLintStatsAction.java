@@ -0,0 +1,119 @@
+package org.edadeal;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextArea;
+import com.intellij.util.ui.JBUI;
+import org.edadeal.utils.LintStats;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Shows the lint pipeline timings and counters, and exports them as CSV or Prometheus text.
+ */
+public class StLintStatsAction extends AnAction implements DumbAware {
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        new StatsDialog(e.getProject()).show();
+    }
+
+    private static final class StatsDialog extends DialogWrapper {
+        @Nullable
+        private final Project project;
+        private final JBTextArea text = new JBTextArea();
+
+        StatsDialog(@Nullable Project project) {
+            super(project, false);
+            this.project = project;
+
+            setTitle("Stylus Linter Stats");
+            setOKButtonText("Close");
+            init();
+            refresh();
+        }
+
+        @Override
+        protected @Nullable JComponent createCenterPanel() {
+            text.setEditable(false);
+            text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, text.getFont().getSize()));
+
+            final JBScrollPane scrollPane = new JBScrollPane(text);
+            scrollPane.setPreferredSize(JBUI.size(640, 360));
+
+            return scrollPane;
+        }
+
+        @Override
+        protected Action @NotNull [] createLeftSideActions() {
+            return new Action[]{
+                    new DialogWrapperAction("Refresh") {
+                        @Override
+                        protected void doAction(ActionEvent e) {
+                            refresh();
+                        }
+                    },
+                    new DialogWrapperAction("Reset") {
+                        @Override
+                        protected void doAction(ActionEvent e) {
+                            LintStats.reset();
+                            refresh();
+                        }
+                    },
+                    new DialogWrapperAction("Export CSV...") {
+                        @Override
+                        protected void doAction(ActionEvent e) {
+                            export("csv", LintStats::toCsv);
+                        }
+                    },
+                    new DialogWrapperAction("Export Prometheus...") {
+                        @Override
+                        protected void doAction(ActionEvent e) {
+                            export("prom", LintStats::toPrometheus);
+                        }
+                    }
+            };
+        }
+
+        @Override
+        protected Action @NotNull [] createActions() {
+            return new Action[]{getOKAction()};
+        }
+
+        private void refresh() {
+            text.setText(LintStats.toText());
+            text.setCaretPosition(0);
+        }
+
+        private void export(@NotNull String extension, @NotNull Supplier<String> content) {
+            final VirtualFileWrapper target = FileChooserFactory.getInstance()
+                    .createSaveFileDialog(new FileSaverDescriptor("Export Stylus Linter Stats", "", extension), project)
+                    .save((VirtualFile) null, "stlint-stats." + extension);
+
+            if (target == null) {
+                return;
+            }
+
+            try {
+                FileUtil.writeToFile(target.getFile(), content.get());
+            } catch (IOException e) {
+                Messages.showErrorDialog(project, e.getMessage(), "Export Stylus Linter Stats");
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.edadeal;
+
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.css.CssDeclaration;
+import com.intellij.psi.css.CssTermList;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Where the caret is in a Stylus file, as far as stlint autocomplete cares.
+ */
+enum StylusCompletionContext {
+    NONE,
+    SELECTOR,
+    PROPERTY,
+    VALUE;
+
+    private static final String SELECTOR_STARTS = ".#&>~+[*@$/";
+
+    boolean canSuggest() {
+        return this == PROPERTY || this == VALUE;
+    }
+
+    @NotNull
+    static StylusCompletionContext classify(@NotNull PsiElement position, @NotNull String linePrefix) {
+        if (PsiTreeUtil.getParentOfType(position, PsiComment.class, false) != null) {
+            return NONE;
+        }
+
+        final CssDeclaration declaration = PsiTreeUtil.getParentOfType(position, CssDeclaration.class, false);
+
+        if (declaration != null) {
+            final CssTermList value = declaration.getValue();
+
+            return value != null && PsiTreeUtil.isAncestor(value, position, false) ? VALUE : PROPERTY;
+        }
+
+        // in the indented syntax a half typed property still parses as a selector, so the line decides
+        return classifyLine(linePrefix);
+    }
+
+    @NotNull
+    static StylusCompletionContext classifyLine(@NotNull String linePrefix) {
+        int start = 0;
+
+        while (start < linePrefix.length() && Character.isWhitespace(linePrefix.charAt(start))) {
+            start++;
+        }
+
+        if (start == linePrefix.length()) {
+            return PROPERTY;
+        }
+
+        if (SELECTOR_STARTS.indexOf(linePrefix.charAt(start)) >= 0 || linePrefix.indexOf('{', start) >= 0) {
+            return SELECTOR;
+        }
+
+        int quotes = 0;
+
+        for (int i = start; i < linePrefix.length(); i++) {
+            final char c = linePrefix.charAt(i);
+
+            if (c == '"' || c == '\'') {
+                quotes++;
+            }
+        }
+
+        if (quotes % 2 != 0) {
+            return NONE;
+        }
+
+        for (int i = start; i < linePrefix.length(); i++) {
+            final char c = linePrefix.charAt(i);
+
+            if (c == ':' || Character.isWhitespace(c)) {
+                return VALUE;
+            }
+        }
+
+        return PROPERTY;
+    }
+}
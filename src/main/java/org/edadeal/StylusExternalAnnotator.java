@@ -5,28 +5,51 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import org.edadeal.utils.CreatePropertyQuickFix;
 import org.jetbrains.annotations.NotNull;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class StylusExternalAnnotator extends ExternalAnnotator<StylusExternalAnnotator.CollectedInfo, Collection<Error>> {
     static class CollectedInfo {
         final @NotNull Document document;
         final @NotNull PsiFile file;
+        final @NotNull LintScheduler.Priority priority;
 
-        CollectedInfo(final @NotNull Document document, final @NotNull PsiFile file) {
+        CollectedInfo(final @NotNull Document document, final @NotNull PsiFile file, final @NotNull LintScheduler.Priority priority) {
             this.document = document;
             this.file = file;
+            this.priority = priority;
         }
     }
 
     private static final Logger log = Logger.getInstance(ExternalAnnotator.class);
 
+    private final boolean batch;
+
+    public StylusExternalAnnotator() {
+        this(false);
+    }
+
+    /**
+     * @param batch lint through the bounded batch workers, used by Inspect Code
+     */
+    public StylusExternalAnnotator(boolean batch) {
+        this.batch = batch;
+    }
+
     public CollectedInfo collectInformation(@NotNull PsiFile file) {
+        return collectInformation(file, batch ? LintScheduler.Priority.BACKGROUND : LintScheduler.Priority.VISIBLE);
+    }
+
+    private CollectedInfo collectInformation(@NotNull PsiFile file, @NotNull LintScheduler.Priority priority) {
         final VirtualFile vfile = file.getVirtualFile();
 
         if (vfile == null) {
@@ -42,7 +65,7 @@ public class StylusExternalAnnotator extends ExternalAnnotator<StylusExternalAnn
             return null;
         }
 
-        return new CollectedInfo(document, file);
+        return new CollectedInfo(document, file, priority);
     }
 
     public CollectedInfo collectInformation(@NotNull PsiFile file, @NotNull Editor editor, boolean hasErrors) {
@@ -50,7 +73,11 @@ public class StylusExternalAnnotator extends ExternalAnnotator<StylusExternalAnn
             return null;
         }
 
-        return collectInformation(file);
+        // only orders the run in the scheduler, so a focus change racing with this check is harmless
+        return collectInformation(
+                file,
+                editor.getContentComponent().hasFocus() ? LintScheduler.Priority.FOCUSED : LintScheduler.Priority.VISIBLE
+        );
     }
 
     /**
@@ -62,9 +89,13 @@ public class StylusExternalAnnotator extends ExternalAnnotator<StylusExternalAnn
             return null;
         }
 
+        ProgressManager.checkCanceled();
+
         log.info("running Stylus Linter external annotator for " + collectedInfo);
 
-        return TypeCheck.errors(collectedInfo.file, collectedInfo.document);
+        return batch
+                ? StLintBatchLinter.errors(collectedInfo.file, collectedInfo.document)
+                : LastKnownResults.errors(collectedInfo.file, collectedInfo.document, collectedInfo.priority);
     }
 
     public void apply(@NotNull final PsiFile file, final Collection<Error> annotationResult, @NotNull final AnnotationHolder holder) {
@@ -72,11 +103,43 @@ public class StylusExternalAnnotator extends ExternalAnnotator<StylusExternalAnn
 
         System.out.println("External also work stlint");
 
+        final Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+
+        if (!batch && document != null) {
+            LastKnownResults.remember(document, annotationResult);
+        }
+
+        // StylusFastRulesAnnotator already highlights what the in-process rules find, Inspect Code runs no annotators
+        final List<Error> fastErrors = StylusFastRulesAnnotator.errors(file);
+        final List<Error> shown = new ArrayList<>(annotationResult.size() + fastErrors.size());
+
         for (final Error error: annotationResult) {
+            if (fastErrors.isEmpty() || document == null || !StylusFastRulesAnnotator.isDuplicate(document, error, fastErrors)) {
+                shown.add(error);
+            }
+        }
+
+        final List<Error> fixable = new ArrayList<>(shown);
+        fixable.addAll(fastErrors);
+
+        if (batch) {
+            shown.addAll(fastErrors);
+        }
+
+        // one shared instance, offered on every fixable problem
+        final StLintFixAllQuickFix fixAll = document != null && StLintFixes.count(fixable) > 1
+                ? new StLintFixAllQuickFix(document, fixable)
+                : null;
+
+        for (final Error error: shown) {
             if (error.fix() != null) {
-                holder.createErrorAnnotation(error.range(), error.message()).registerFix(
-                        new CreatePropertyQuickFix(error.fix(), error.range())
-                );
+                final Annotation annotation = holder.createErrorAnnotation(error.range(), error.message());
+
+                annotation.registerFix(new CreatePropertyQuickFix(error.fix(), error.range()));
+
+                if (fixAll != null) {
+                    annotation.registerFix(fixAll);
+                }
             } else {
                 holder.createErrorAnnotation(error.range(), error.message());
             }
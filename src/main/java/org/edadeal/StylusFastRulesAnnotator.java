@@ -0,0 +1,87 @@
+package org.edadeal;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.Annotator;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import org.edadeal.rules.StylusRules;
+import org.edadeal.rules.Violation;
+import org.edadeal.utils.CreatePropertyQuickFix;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Highlights what the in-process rules find in the regular highlighting pass, without waiting for stlint.
+ * {@link StylusExternalAnnotator} leaves out stlint's reports of the same problems.
+ */
+public class StylusFastRulesAnnotator implements Annotator {
+    @Override
+    public void annotate(@NotNull PsiElement element, @NotNull AnnotationHolder holder) {
+        if (!(element instanceof PsiFile)) {
+            return;
+        }
+
+        for (final Error error: errors((PsiFile) element)) {
+            if (error.fix() != null) {
+                holder.createErrorAnnotation(error.range(), error.message()).registerFix(
+                        new CreatePropertyQuickFix(error.fix(), error.range())
+                );
+            } else {
+                holder.createErrorAnnotation(error.range(), error.message());
+            }
+        }
+    }
+
+    /**
+     * @return the in-process rule violations of the file's current document, empty when the rules are off
+     */
+    @NotNull
+    static List<Error> errors(@NotNull PsiFile file) {
+        final VirtualFile vfile = file.getVirtualFile();
+        final Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+
+        if (!StylusRules.isEnabled() || vfile == null || document == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Violation> violations = StylusRules.check(file.getProject(), vfile, document);
+        final List<Error> errors = new ArrayList<>(violations.size());
+
+        for (final Violation violation: violations) {
+            errors.add(new Error(violation.message, TextRange.create(violation.start, violation.end), violation.fix, violation.rule));
+        }
+
+        return errors;
+    }
+
+    /**
+     * @return true when an in-process rule reports the same problem: the same rule on the same line, or,
+     * for reports without a rule name, an overlapping range on the same line
+     */
+    static boolean isDuplicate(@NotNull Document document, @NotNull Error error, @NotNull List<Error> fastErrors) {
+        final int line = getLine(document, error.range().getStartOffset());
+
+        for (final Error fast: fastErrors) {
+            if (getLine(document, fast.range().getStartOffset()) != line) {
+                continue;
+            }
+
+            if (error.rule() != null ? error.rule().equals(fast.rule()) : error.range().intersects(fast.range())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int getLine(@NotNull Document document, int offset) {
+        return document.getLineNumber(Math.max(0, Math.min(offset, document.getTextLength())));
+    }
+}
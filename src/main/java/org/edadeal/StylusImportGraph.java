@@ -0,0 +1,495 @@
+package org.edadeal;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.edadeal.utils.ContentHash;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which Stylus file imports which, learned from the text of every linted file.
+ * A saved file re-lints the files depending on it, and errors stlint reports against imported files are kept for them.
+ */
+public final class StylusImportGraph implements Disposable {
+    private static final Logger log = Logger.getInstance(StylusImportGraph.class);
+    private static final String EXTENSION = "styl";
+    private static final int MAX_CANONICAL = 4096;
+    private static final Pattern IMPORT = Pattern.compile("@(?:import|require)\\s+(['\"])([^'\"\\n]+)\\1");
+
+    private static final class Node {
+        long contentHash;
+        /**
+         * Modification stamp of the saved file the imports were read from, 0 when they came from other text
+         */
+        long fileStamp;
+        final Set<String> imports = new HashSet<>();
+        final Set<String> dependents = new HashSet<>();
+    }
+
+    private static final class Reported {
+        final long contentHash;
+        @NotNull
+        final Collection<Error> errors;
+
+        Reported(long contentHash, @NotNull Collection<Error> errors) {
+            this.contentHash = contentHash;
+            this.errors = errors;
+        }
+    }
+
+    private final Project project;
+    private final Map<String, Node> nodes = new HashMap<>();
+    /**
+     * Errors reported against a file (outer key) while linting another one (inner key)
+     */
+    private final Map<String, Map<String, Reported>> reported = new HashMap<>();
+    /**
+     * The foreign errors last reported per source, so a cache hit on the same result does not re-map them
+     */
+    private final Map<String, Map<String, List<OutputReader.ForeignError>>> reportedFrom = new HashMap<>();
+    /**
+     * Real paths of the files seen, so imports through symlinks or ./.. segments meet the path the file was linted at.
+     * Least recently used ones are forgotten past {@link #MAX_CANONICAL}.
+     */
+    private final Map<String, String> canonical = Collections.synchronizedMap(new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CANONICAL;
+        }
+    });
+
+    public StylusImportGraph(@NotNull Project project) {
+        this.project = project;
+
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                final Set<String> changed = new HashSet<>();
+
+                for (final VFileEvent event: events) {
+                    if (event.getPath().endsWith("." + EXTENSION)) {
+                        changed.add(event.getPath());
+                    }
+                }
+
+                // resolving real paths touches the disk, not here on the EDT inside the write action
+                if (!changed.isEmpty()) {
+                    AppExecutorUtil.getAppExecutorService().execute(() -> relintDependents(changed));
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static StylusImportGraph getInstance(@NotNull Project project) {
+        return project.getService(StylusImportGraph.class);
+    }
+
+    /**
+     * Re-reads the imports of the file when its text changed since the last call
+     */
+    void update(@NotNull String rawPath, @NotNull String dir, @NotNull CharSequence content, long contentHash) {
+        final String path = canonicalize(rawPath);
+
+        synchronized (nodes) {
+            final Node known = nodes.get(path);
+
+            if (known != null && known.contentHash == contentHash) {
+                return;
+            }
+        }
+
+        final Set<String> imports = new HashSet<>();
+
+        for (final String imported: parseImports(dir, content)) {
+            imports.add(canonicalize(imported));
+        }
+
+        synchronized (nodes) {
+            final Node node = nodes.computeIfAbsent(path, key -> new Node());
+
+            node.contentHash = contentHash;
+            node.fileStamp = 0;
+
+            for (final String removed: node.imports) {
+                if (!imports.contains(removed)) {
+                    final Node imported = nodes.get(removed);
+
+                    if (imported != null) {
+                        imported.dependents.remove(path);
+                    }
+                }
+            }
+
+            for (final String added: imports) {
+                nodes.computeIfAbsent(added, key -> new Node()).dependents.add(path);
+            }
+
+            node.imports.clear();
+            node.imports.addAll(imports);
+        }
+    }
+
+    /**
+     * Changes whenever a file the given one imports, directly or not, is saved, so results linted against old imports are not reused.
+     * The import closure is read from the files themselves rather than taken from what this session happened to lint,
+     * so the stamp, and with it the disk cache key, is the same after a restart.
+     * Call {@link #update} for the file first.
+     */
+    long getDependencyStamp(@NotNull String rawPath) {
+        final String path = canonicalize(rawPath);
+        final Set<String> visited = new HashSet<>();
+        final Deque<String> queue = new ArrayDeque<>();
+
+        synchronized (nodes) {
+            final Node node = nodes.get(path);
+
+            if (node != null) {
+                queue.addAll(node.imports);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            final String next = queue.poll();
+
+            if (!next.equals(path) && visited.add(next)) {
+                queue.addAll(readImports(next));
+            }
+        }
+
+        if (visited.isEmpty()) {
+            return 0;
+        }
+
+        final List<String> imports = new ArrayList<>(visited);
+
+        Collections.sort(imports);
+
+        final StringBuilder builder = new StringBuilder();
+
+        for (final String imported: imports) {
+            final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(imported);
+
+            builder.append(imported).append(':').append(file != null ? file.getTimeStamp() : -1).append('\n');
+        }
+
+        return ContentHash.of(builder);
+    }
+
+    /**
+     * Imports of the saved file, the text stlint reads for it, re-parsed only when the file changed since
+     */
+    @NotNull
+    private Set<String> readImports(@NotNull String path) {
+        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+
+        if (file == null || !file.isValid() || file.isDirectory() || file.getParent() == null) {
+            return Collections.emptySet();
+        }
+
+        final long stamp = file.getModificationStamp();
+
+        synchronized (nodes) {
+            final Node node = nodes.get(path);
+
+            if (node != null && node.fileStamp == stamp) {
+                return new HashSet<>(node.imports);
+            }
+        }
+
+        final CharSequence text = ReadAction.compute(() -> file.isValid() ? LoadTextUtil.loadText(file) : null);
+
+        if (text == null) {
+            return Collections.emptySet();
+        }
+
+        update(path, file.getParent().getPath(), text, ContentHash.of(text));
+
+        synchronized (nodes) {
+            final Node node = nodes.get(path);
+
+            if (node == null) {
+                return Collections.emptySet();
+            }
+
+            node.fileStamp = stamp;
+
+            return new HashSet<>(node.imports);
+        }
+    }
+
+    /**
+     * Remembers what linting {@code source} reported against other files, mapped through their current text
+     */
+    void report(@NotNull String rawSource, @NotNull Map<String, List<OutputReader.ForeignError>> foreignErrors) {
+        final String source = canonicalize(rawSource);
+
+        synchronized (reported) {
+            if (reportedFrom.get(source) == foreignErrors) {
+                return;
+            }
+        }
+
+        final Map<String, Reported> mapped = new HashMap<>();
+
+        for (final Map.Entry<String, List<OutputReader.ForeignError>> entry: foreignErrors.entrySet()) {
+            final String target = canonicalize(FileUtil.toSystemIndependentName(entry.getKey()));
+            final CharSequence text = loadText(target);
+
+            if (text == null) {
+                continue;
+            }
+
+            final LineIndex lines = LineIndex.of(text);
+            final List<Error> errors = new ArrayList<>(entry.getValue().size());
+
+            for (final OutputReader.ForeignError error: entry.getValue()) {
+                errors.add(error.map(lines));
+            }
+
+            mapped.put(target, new Reported(ContentHash.of(text), errors));
+        }
+
+        synchronized (reported) {
+            reportedFrom.put(source, foreignErrors);
+
+            for (final Map<String, Reported> bySource: reported.values()) {
+                bySource.remove(source);
+            }
+
+            for (final Map.Entry<String, Reported> entry: mapped.entrySet()) {
+                reported.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(source, entry.getValue());
+            }
+
+            reported.values().removeIf(Map::isEmpty);
+        }
+    }
+
+    /**
+     * @return errors other files' runs reported against this text of the file
+     */
+    @NotNull
+    Collection<Error> getReported(@NotNull String path, long contentHash) {
+        final String target = canonicalize(path);
+
+        synchronized (reported) {
+            final Map<String, Reported> bySource = reported.get(target);
+
+            if (bySource == null) {
+                return Collections.emptyList();
+            }
+
+            final List<Error> errors = new ArrayList<>();
+
+            for (final Reported entry: bySource.values()) {
+                if (entry.contentHash == contentHash) {
+                    errors.addAll(entry.errors);
+                }
+            }
+
+            return errors;
+        }
+    }
+
+    /**
+     * @param imports true for everything the file imports, false for everything importing it
+     */
+    @NotNull
+    Set<String> collect(@NotNull String rawPath, boolean imports) {
+        final String path = canonicalize(rawPath);
+        final Set<String> visited = new HashSet<>();
+        final Deque<String> queue = new ArrayDeque<>();
+
+        queue.add(path);
+
+        synchronized (nodes) {
+            while (!queue.isEmpty()) {
+                final Node node = nodes.get(queue.poll());
+
+                if (node == null) {
+                    continue;
+                }
+
+                for (final String next: imports ? node.imports : node.dependents) {
+                    if (!next.equals(path) && visited.add(next)) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+
+        return visited;
+    }
+
+    private void relintDependents(@NotNull Set<String> changedPaths) {
+        final Set<String> changed = new HashSet<>();
+        final Set<String> dependents = new HashSet<>();
+
+        for (final String path: changedPaths) {
+            changed.add(canonicalize(path));
+        }
+
+        for (final String path: changed) {
+            dependents.addAll(collect(path, false));
+        }
+
+        dependents.removeAll(changed);
+
+        if (dependents.isEmpty() || project.isDisposed()) {
+            return;
+        }
+
+        log.info("stlint re-lints " + dependents.size() + " dependents of " + changed);
+
+        final List<VirtualFile> open = new ArrayList<>();
+
+        for (final String path: dependents) {
+            final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+
+            if (file == null || !file.isValid()) {
+                continue;
+            }
+
+            if (StLintProjectIndex.isEnabled()) {
+                StLintProjectIndex.getInstance(project).schedule(file);
+            }
+
+            if (FileEditorManager.getInstance(project).isFileOpen(file)) {
+                open.add(file);
+            }
+        }
+
+        if (open.isEmpty()) {
+            return;
+        }
+
+        ApplicationManager.getApplication().invokeLater(() -> {
+            for (final VirtualFile file: open) {
+                final PsiFile psiFile = file.isValid() ? PsiManager.getInstance(project).findFile(file) : null;
+
+                if (psiFile != null) {
+                    DaemonCodeAnalyzer.getInstance(project).restart(psiFile);
+                }
+            }
+        }, project.getDisposed());
+    }
+
+    /**
+     * Resolves symlinks while the file exists and remembers the answer, so a deleted file still maps to where it was;
+     * falls back to collapsing ./.. segments
+     */
+    @NotNull
+    private String canonicalize(@NotNull String path) {
+        final String known = canonical.get(path);
+
+        if (known != null) {
+            return known;
+        }
+
+        try {
+            final String real = FileUtil.toSystemIndependentName(Paths.get(path).toRealPath().toString());
+
+            canonical.put(path, real);
+
+            return real;
+        } catch (IOException | InvalidPathException | SecurityException e) {
+            final String normalized = FileUtil.toCanonicalPath(path);
+
+            return normalized != null ? normalized : path;
+        }
+    }
+
+    @NotNull
+    private static Set<String> parseImports(@NotNull String dir, @NotNull CharSequence content) {
+        final Set<String> imports = new HashSet<>();
+        final Matcher matcher = IMPORT.matcher(content);
+
+        while (matcher.find()) {
+            final String resolved = resolve(dir, matcher.group(2).trim());
+
+            if (resolved != null) {
+                imports.add(resolved);
+            }
+        }
+
+        return imports;
+    }
+
+    /**
+     * Relative imports only, the way stylus looks them up: as is, with .styl appended, or as a directory index
+     */
+    @Nullable
+    private static String resolve(@NotNull String dir, @NotNull String request) {
+        if (request.isEmpty() || request.contains("*") || request.contains("://") || request.endsWith(".css")) {
+            return null;
+        }
+
+        final String base = FileUtil.toCanonicalPath(request.startsWith("/") ? request : dir + '/' + request);
+        final String[] candidates = request.endsWith("." + EXTENSION)
+                ? new String[]{base}
+                : new String[]{base + "." + EXTENSION, base + "/index." + EXTENSION};
+
+        for (final String candidate: candidates) {
+            final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(candidate);
+
+            if (file != null && !file.isDirectory()) {
+                return file.getPath();
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private static CharSequence loadText(@NotNull String path) {
+        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+
+        if (file == null || !file.isValid() || file.isDirectory()) {
+            return null;
+        }
+
+        return ReadAction.compute(() -> {
+            final Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+
+            return document != null ? document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+        });
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (nodes) {
+            nodes.clear();
+        }
+
+        synchronized (reported) {
+            reported.clear();
+            reportedFrom.clear();
+        }
+
+        canonical.clear();
+    }
+}
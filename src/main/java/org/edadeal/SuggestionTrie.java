@@ -0,0 +1,111 @@
+package org.edadeal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Case-insensitive prefix trie over suggestion titles. Children are kept in sorted parallel arrays.
+ */
+final class SuggestionTrie {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_NODES;
+        String title;
+
+        @NotNull
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+
+            final char[] newKeys = new char[keys.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+            newKeys[index] = key;
+            newChildren[index] = new Node();
+
+            keys = newKeys;
+            children = newChildren;
+
+            return newChildren[index];
+        }
+
+        Node find(char key) {
+            final int index = Arrays.binarySearch(keys, key);
+
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private final Node root = new Node();
+    private final int size;
+
+    SuggestionTrie(@NotNull Collection<String> titles) {
+        int count = 0;
+
+        for (final String title: titles) {
+            Node node = root;
+
+            for (int i = 0; i < title.length(); i++) {
+                node = node.child(Character.toLowerCase(title.charAt(i)));
+            }
+
+            if (node.title == null) {
+                node.title = title;
+                count++;
+            }
+        }
+
+        size = count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return titles starting with the prefix, in alphabetical order
+     */
+    @NotNull
+    List<String> find(@NotNull CharSequence prefix) {
+        Node node = root;
+
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.find(Character.toLowerCase(prefix.charAt(i)));
+        }
+
+        final List<String> result = new ArrayList<>();
+
+        if (node != null) {
+            collect(node, result);
+        }
+
+        return result;
+    }
+
+    private static void collect(@NotNull Node node, @NotNull List<String> result) {
+        if (node.title != null) {
+            result.add(node.title);
+        }
+
+        for (final Node child: node.children) {
+            collect(child, result);
+        }
+    }
+}
@@ -2,14 +2,19 @@ package org.edadeal;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import org.edadeal.settings.StLintConfiguration;
 import org.edadeal.settings.StLintState;
-import org.edadeal.utils.StlintConfigFinder;
-import org.edadeal.utils.StlintExeFinder;
+import org.edadeal.utils.ContentHash;
+import org.edadeal.utils.LintStats;
+import org.edadeal.utils.NodeFinder;
+import org.edadeal.utils.StlintConfigIndex;
+import org.edadeal.utils.StlintExeResolver;
+import org.edadeal.utils.StlintPackage;
 import org.edadeal.utils.StylusLinterRunner;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -19,26 +24,40 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 class TypeCheck {
     private static final Logger log = Logger.getInstance(TypeCheck.class);
 
     private static final Collection<Error> noProblems = Collections.emptyList();
     private static final Collection<Suggest> noSuggest = Collections.emptyList();
+    private static final LintResult noResult = new LintResult(noProblems, Collections.emptyMap());
 
-    private static final class TypeDataParams {
+    private static final LintResultCache cache = new LintResultCache();
+    private static final LintDiskCache diskCache = new LintDiskCache();
+    private static final SingleFlight<String, LintResult> flights = new SingleFlight<>();
+
+    static final class TypeDataParams {
         final public Project project;
         final public String exePath;
         final public String path;
-        final public String text;
+        final public String node;
+        final public String cwd;
+        final public VirtualFile dir;
 
         public TypeDataParams(
                 Project project,
                 String exePath,
                 String path,
-                String text
+                String node,
+                String cwd,
+                VirtualFile dir
         ) {
-            this.text = text;
+            this.dir = dir;
+            this.cwd = cwd;
+            this.node = node;
             this.path = path;
             this.exePath = exePath;
             this.project = project;
@@ -86,23 +105,43 @@ class TypeCheck {
             return null;
         }
 
-        final String text = file.getText();
-
-        String exePath = StlintExeFinder.getPath(project, getState(project));
+        final StlintExeResolver.Toolchain toolchain = StlintExeResolver.getInstance(project).resolve(vparent, getState(project));
 
-        if (exePath == null || exePath.isEmpty()) {
+        if (toolchain == null || toolchain.exe.isEmpty()) {
             log.info("StLint is not installed");
             return null;
         }
 
-        return new TypeDataParams(project, exePath, path, text);
+        final String node = NodeFinder.getInterpreterPath(project, getState(project).getInterpreterRef());
+
+        return new TypeDataParams(project, toolchain.exe, path, node, toolchain.root, vparent);
     }
 
 
     static @NotNull Collection<Error> errors(PsiFile file, Document document) {
+        return errors(file, document, 0, LintScheduler.Priority.VISIBLE);
+    }
+
+    /**
+     * @param worker which daemon of the package serves the run, 0 is the one used by the editor
+     * @param priority where the run waits in {@link LintScheduler}
+     */
+    static @NotNull Collection<Error> errors(PsiFile file, Document document, int worker, LintScheduler.Priority priority) {
+        final long start = System.nanoTime();
+
+        try {
+            return collectErrors(file, document, worker, priority);
+        } finally {
+            LintStats.record(LintStats.Stage.TOTAL, start);
+        }
+    }
+
+    private static @NotNull Collection<Error> collectErrors(PsiFile file, Document document, int worker, LintScheduler.Priority priority) {
 
         log.info("Stylus Linter checkFile" + file);
 
+        final long resolveStart = System.nanoTime();
+
         final TypeDataParams params = checkCommon(file);
 
         log.info("Result" + params);
@@ -111,101 +150,207 @@ class TypeCheck {
             return noProblems;
         }
 
-        final String stylusOutput = stylusCheck(
-                params.project,
-                params.exePath,
-                params.path,
-                params.text,
-                null, null, null
-        );
+        final String configPath = resolveConfigPath(params.project, params.dir);
 
-        log.debug("stylus output", stylusOutput);
+        LintStats.record(LintStats.Stage.RESOLVE, resolveStart);
 
-        if (stylusOutput.isEmpty()) {
+        if (configPath == null) {
             return noProblems;
         }
 
-        Output.Response response = null;
+        final long stamp = document.getModificationStamp();
+        final CharSequence content = document.getImmutableCharSequence();
+        final long contentHash = ContentHash.of(content);
+        // the document may change while we read it, then we cannot tell which version the content is
+        final long version = document.getModificationStamp() == stamp ? stamp : 0;
 
-        try {
-            response = Output.parse(stylusOutput);
-        } catch (Exception ignored) {
-            log.error(stylusOutput);
+        final StylusImportGraph graph = StylusImportGraph.getInstance(params.project);
+
+        graph.update(params.path, params.dir.getPath(), content, contentHash);
+
+        final LintResultCache.Key cacheKey = getCacheKey(
+                params.path,
+                content,
+                contentHash,
+                configPath,
+                StlintConfigIndex.getInstance(params.project).getConfigHash(configPath),
+                params.exePath,
+                graph.getDependencyStamp(params.path)
+        );
+
+        final Collection<Error> own = ownResult(params, document, content, version, configPath, cacheKey, worker, priority).errors;
+
+        return withReported(own, graph.getReported(params.path, contentHash));
+    }
+
+    private static @NotNull LintResult ownResult(
+            @NotNull TypeDataParams params,
+            @NotNull Document document,
+            @NotNull CharSequence content,
+            long version,
+            @NotNull String configPath,
+            @NotNull LintResultCache.Key cacheKey,
+            int worker,
+            @NotNull LintScheduler.Priority priority
+    ) {
+        final LintResult cached = getCached(cacheKey);
+
+        if (cached != null) {
+            return reported(params, cached);
         }
 
-        if (response == null || response.passed) {
-            log.info("stylus passed");
-            return noProblems;
+        ProgressManager.checkCanceled();
+
+        // the highlighting pass and the inspection may ask for the same unchanged file at once
+        final String flightKey = params.path + '\n' + document.getModificationStamp() + '\n' + configPath + '\n' + cacheKey.configHash
+                + '\n' + cacheKey.dependencyStamp;
+
+        return flights.run(flightKey, () -> {
+            final LintResult shared = cache.get(cacheKey);
+
+            return shared != null ? reported(params, shared) : lint(params, document, content, version, configPath, cacheKey, worker, priority);
+        });
+    }
+
+    @NotNull
+    private static LintResultCache.Key getCacheKey(
+            @NotNull String path,
+            @NotNull CharSequence content,
+            long contentHash,
+            @NotNull String configPath,
+            long configHash,
+            @NotNull String exePath,
+            long dependencyStamp
+    ) {
+        return new LintResultCache.Key(
+                path,
+                contentHash,
+                content.length(),
+                configPath,
+                configHash,
+                exePath,
+                StlintPackage.forExe(exePath).version,
+                dependencyStamp
+        );
+    }
+
+    /**
+     * Looks in memory first, then on disk, moving a disk hit into memory
+     */
+    @Nullable
+    private static LintResult getCached(@NotNull LintResultCache.Key cacheKey) {
+        final LintResult cached = cache.get(cacheKey);
+
+        if (cached != null) {
+            log.debug("stylus result cache hit for " + cacheKey.path);
+            LintStats.count(LintStats.Counter.CACHE_HITS);
+            return cached;
         }
 
-        if (response.errors == null) {
-            log.error("stylus failed, but shows no errors");
-            return noProblems;
+        final LintResult stored = diskCache.get(cacheKey);
+
+        if (stored != null) {
+            log.debug("stylus result disk cache hit for " + cacheKey.path);
+            LintStats.count(LintStats.Counter.DISK_CACHE_HITS);
+            cache.put(cacheKey, stored);
+            return stored;
         }
 
-        final Collection<Error> errors = new ArrayList<>();
+        LintStats.count(LintStats.Counter.CACHE_MISSES);
 
-        for (final Output.Error error: response.errors) {
-            final ArrayList<Output.MessagePart> messageParts = error.message;
+        return null;
+    }
 
-            if (messageParts == null || messageParts.size() == 0) {
-                log.error("stylus missing message in error " + error);
-                continue;
-            }
+    private static void putCached(@NotNull LintResultCache.Key cacheKey, @NotNull LintResult result) {
+        cache.put(cacheKey, result);
+        diskCache.put(cacheKey, result);
+    }
 
-            final Output.MessagePart firstPart = messageParts.get(0);
+    /**
+     * A cached result comes with what its run reported against imported files, which the graph may have
+     * dropped since, e.g. after a restart or a lint of another version of the file
+     */
+    private static @NotNull LintResult reported(@NotNull TypeDataParams params, @NotNull LintResult result) {
+        StylusImportGraph.getInstance(params.project).report(params.path, result.foreignErrors);
 
+        return result;
+    }
 
-            if (pathIsNotEqual(params.path, firstPart.path)) {
-                log.info("skip error because first message part path " + firstPart.path + " does not match file path " + params.path);
-                continue;
-            }
+    /**
+     * Adds errors that runs of importing files reported against this one, skipping those stlint already reported here
+     */
+    private static @NotNull Collection<Error> withReported(@NotNull Collection<Error> own, @NotNull Collection<Error> reported) {
+        if (reported.isEmpty()) {
+            return own;
+        }
 
-            final StringBuilder errorMessageBuilder = new StringBuilder(firstPart.descr);
+        final Set<String> seen = new HashSet<>();
+        final List<Error> errors = new ArrayList<>(own);
 
-            for (int i = 1; i < messageParts.size(); i++) {
-                final Output.MessagePart messagePart = messageParts.get(i);
-                if (messagePart.path == null || messagePart.path.isEmpty()) {
-                    errorMessageBuilder.append(": ");
-                } else {
-                    errorMessageBuilder.append(" ");
-                }
-                errorMessageBuilder.append(messagePart.descr);
+        for (final Error error: own) {
+            seen.add(error.range() + error.message());
+        }
+
+        for (final Error error: reported) {
+            if (seen.add(error.range() + error.message())) {
+                errors.add(error);
             }
+        }
 
-            final String errorMessage = errorMessageBuilder.toString();
+        return errors;
+    }
 
-            log.info("Stylus found error: " + errorMessage);
+    private static @NotNull LintResult lint(
+            @NotNull TypeDataParams params,
+            @NotNull Document document,
+            @NotNull CharSequence content,
+            long version,
+            @NotNull String configPath,
+            @NotNull LintResultCache.Key cacheKey,
+            int worker,
+            @NotNull LintScheduler.Priority priority
+    ) {
+        final StylusLinterRunner.ExtraParams extraParams = new StylusLinterRunner.ExtraParams();
 
-            for (final Output.MessagePart part: error.message) {
-                if (part.path.isEmpty()) {
-                    // skip part of error message that has no file/line reference
-                    continue;
-                }
-                if (pathIsNotEqual(params.path, part.path)) {
-                    // skip part of error message that refers to content in another file
-                    continue;
-                }
+        extraParams.worker = worker;
+        extraParams.document = document;
+        extraParams.version = version;
 
-                final int lineStartOffset = document.getLineStartOffset(remapLine(part.line, document));
-                final int lineEndOffset = document.getLineStartOffset(remapLine(part.endline, document));
+        final OutputReader reader = new OutputReader(params.path, LineIndex.of(content));
 
-                log.info("Stylus error for file " + file + " at " + part.line + ":" + part.start + " to " + part.endline + ":" + part.end + " range " + TextRange.create(lineStartOffset + part.start - 1, lineEndOffset + part.end));
+        final StylusLinterRunner.Result result = LintScheduler.run(
+                params.path,
+                document.getModificationStamp(),
+                priority,
+                () -> stylusCheck(
+                        params.cwd,
+                        params.exePath,
+                        params.path,
+                        content,
+                        configPath,
+                        params.node,
+                        extraParams,
+                        reader
+                )
+        );
 
-                errors.add(new Error(
-                    errorMessage,
-                    TextRange.create(lineStartOffset + part.start - 1, lineEndOffset + part.end),
-                    (part.fix != null ? part.fix.replace : null)
-                ));
-            }
+        if (!result.isOk || !reader.hasOutput()) {
+            return noResult;
         }
 
+        final Collection<Error> errors = reader.getErrors();
+
         if (errors.isEmpty()) {
-            return noProblems;
+            log.info("stylus passed");
         } else {
             log.info("Stylus inspector found errors " + errors);
-            return errors;
         }
+
+        final LintResult lintResult = new LintResult(errors, reader.getForeignErrors());
+
+        putCached(cacheKey, lintResult);
+
+        return reported(params, lintResult);
     }
 
     static @NotNull Collection<Suggest> autoCompletes(PsiFile file, Integer offset, Integer line, String text) {
@@ -217,15 +362,40 @@ class TypeCheck {
             return noSuggest;
         }
 
-        final String stylusOutput = stylusCheck(
-                params.project,
-                params.exePath,
-                params.path,
-                text,
-                "autocomplete",
-                offset,
-                line
-        );
+        return autoCompletes(params, offset, line, text);
+    }
+
+    static @NotNull Collection<Suggest> autoCompletes(@NotNull TypeDataParams params, Integer offset, Integer line, String text) {
+        final String configPath = resolveConfigPath(params.project, params.dir);
+
+        if (configPath == null) {
+            return noSuggest;
+        }
+
+        ProgressManager.checkCanceled();
+
+        final StylusLinterRunner.ExtraParams extraParams = new StylusLinterRunner.ExtraParams();
+
+        extraParams.command = "autocomplete";
+        extraParams.offset = offset;
+        extraParams.line = line;
+
+        // autocomplete runs for different carets must not drop each other, so they are never coalesced
+        final String stylusOutput = StringUtil.notNullize(LintScheduler.run(
+                null,
+                0,
+                LintScheduler.Priority.FOCUSED,
+                () -> stylusCheck(
+                        params.cwd,
+                        params.exePath,
+                        params.path,
+                        text,
+                        configPath,
+                        params.node,
+                        extraParams,
+                        null
+                )
+        ).output);
 
         log.info("stylus output:" + stylusOutput);
 
@@ -256,7 +426,11 @@ class TypeCheck {
         return suggestResult;
     }
 
-    private static boolean pathIsNotEqual(String path1, String path2) {
+    static boolean pathIsNotEqual(String path, @Nullable String contentPath, String reportedPath) {
+        return pathIsNotEqual(path, reportedPath) && (contentPath == null || pathIsNotEqual(contentPath, reportedPath));
+    }
+
+    static boolean pathIsNotEqual(String path1, String path2) {
         String nPath1 = Paths.get(path1).toAbsolutePath().toString();
         String nPath2 = Paths.get(path2).toAbsolutePath().toString();
 
@@ -274,69 +448,72 @@ class TypeCheck {
         return !extension.equals("styl");
     }
 
-    private static int remapLine(int stylusLine, Document document) {
+    static int remapLine(int stylusLine, int lineCount) {
         final int lineIndex = stylusLine - 1;
-        return Math.max(0, Math.min(lineIndex, document.getLineCount() - 1));
+        return Math.max(0, Math.min(lineIndex, lineCount - 1));
     }
 
     private static StLintState getState(Project project) {
         return StLintConfiguration.getInstance(project).getExtendedState().getState();
     }
 
+    /**
+     * @return null when the settings are unusable, empty string when there is no config file
+     */
+    @Nullable
+    private static String resolveConfigPath(Project project, @Nullable VirtualFile dir) {
+        StLintState state = getState(project);
+
+        try {
+            assert state.getCustomConfigFilePath() != null;
+
+            if (!state.getCustomConfigFilePath().isEmpty()) {
+                return state.getCustomConfigFilePath();
+            }
+
+            return dir != null ? StlintConfigIndex.getInstance(project).findConfigPath(dir) : "";
+        } catch (NullPointerException e) {
+            return null;
+        }
+    }
+
     @NotNull
-    private static String stylusCheck(
-            Project project,
+    private static StylusLinterRunner.Result stylusCheck(
+            @NotNull final String cwd,
             @NotNull final String exePath,
             @NotNull final String filePath,
-            @NotNull final String content,
-            @Nullable final String command,
-            @Nullable final Integer offset,
-            @Nullable final Integer line
+            @NotNull final CharSequence content,
+            @NotNull final String configPath,
+            @Nullable final String node,
+            @NotNull final StylusLinterRunner.ExtraParams params,
+            @Nullable final StylusLinterRunner.OutputConsumer consumer
     ) {
 
         final File file = new File(filePath);
 
         final File workingDir = file.getParentFile();
-        final String cwd = project.getBasePath() != null ? project.getBasePath() : workingDir.getAbsolutePath();
 
         log.debug("stylusCheck working directory", workingDir);
 
-        StLintState state = getState(project);
-
-        String configPath;
-
-        try {
-            assert state.getCustomConfigFilePath() != null;
-            configPath = !state.getCustomConfigFilePath().isEmpty() ? state.getCustomConfigFilePath() : StlintConfigFinder.findPath(project, workingDir);
-        } catch (NullPointerException e) {
-            return "";
-        }
-
-        StylusLinterRunner.ExtraParams params = new StylusLinterRunner.ExtraParams();
-
-        params.command = command;
-        params.offset = offset;
-        params.line = line;
-
         StylusLinterRunner.Result result = StylusLinterRunner.runLint(
                new StylusLinterRunner.Params(cwd,
                        file.getAbsolutePath(),
                        exePath,
                        configPath,
                        content,
-                       params
-               )
+                       params,
+                       node
+               ),
+               consumer
         );
 
 
-        final String output = result.output;
-
         if (!result.isOk) {
             log.error("stylus output was empty.\nWorking directory: " + workingDir
                     + "\nFile: " + filePath
                     + "\nstderr: " + result.errorOutput);
         }
 
-        return output;
+        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Locale;
+
+/**
+ * Hex colors in property values must be written in the configured case, "uppercase" or "lowercase"
+ */
+final class ColorRule implements Rule {
+    /**
+     * Element names a selector line may start with; font is left out as it is also a property
+     */
+    private static final Set<String> TAGS = new HashSet<>(Arrays.asList(
+            "a", "abbr", "address", "article", "aside", "audio", "b", "blockquote", "body", "button", "canvas",
+            "caption", "code", "dd", "details", "dialog", "div", "dl", "dt", "em", "fieldset", "figcaption", "figure",
+            "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "html", "i", "iframe", "img",
+            "input", "label", "legend", "li", "main", "mark", "menu", "nav", "ol", "optgroup", "option", "p",
+            "picture", "pre", "progress", "section", "select", "small", "span", "strong", "sub", "summary", "sup",
+            "svg", "table", "tbody", "td", "textarea", "tfoot", "th", "thead", "tr", "u", "ul", "video"
+    ));
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "color";
+    }
+
+    @Override
+    public void check(@NotNull Source source, @NotNull String conf, @NotNull List<Violation> violations) {
+        final boolean upper;
+
+        if (conf.equals("uppercase")) {
+            upper = true;
+        } else if (conf.equals("lowercase")) {
+            upper = false;
+        } else {
+            return;
+        }
+
+        final char[] code = source.code;
+
+        for (int line = 0; line < source.getLineCount(); line++) {
+            final int lineStart = source.getLineStart(line);
+            final int lineEnd = source.getLineEnd(line);
+
+            int first = lineStart;
+
+            while (first < lineEnd && Character.isWhitespace(code[first])) {
+                first++;
+            }
+
+            final int value = getValueStart(code, first, lineEnd);
+
+            if (value < 0) {
+                continue;
+            }
+
+            for (int i = value; i < lineEnd; i++) {
+                if (code[i] != '#' || isWordChar(code[i - 1])) {
+                    continue;
+                }
+
+                int end = i + 1;
+
+                while (end < lineEnd && isHexDigit(code[end])) {
+                    end++;
+                }
+
+                final int digits = end - i - 1;
+
+                if (end < lineEnd && isWordChar(code[end]) || digits != 3 && digits != 4 && digits != 6 && digits != 8) {
+                    i = end - 1;
+                    continue;
+                }
+
+                final String color = new String(code, i, end - i);
+                final String expected = upper ? color.toUpperCase(Locale.ROOT) : color.toLowerCase(Locale.ROOT);
+
+                if (!color.equals(expected)) {
+                    violations.add(new Violation(
+                            getName(),
+                            "Color " + color + " should be " + (upper ? "uppercase" : "lowercase"),
+                            i,
+                            end,
+                            expected
+                    ));
+                }
+
+                i = end - 1;
+            }
+        }
+    }
+
+    /**
+     * Rules that rewrite values only look at the value of a `property value`, `property: value` or `$var = value` line.
+     * Everything else, e.g. `.nav #Add`, `a #Fade`, a mixin call or a line opening a block, is taken for a selector
+     * where #abc is an id.
+     *
+     * @return offset where the value starts, or -1 for selector lines
+     */
+    static int getValueStart(@NotNull char[] code, int first, int lineEnd) {
+        int last = lineEnd - 1;
+
+        while (last >= first && Character.isWhitespace(code[last])) {
+            last--;
+        }
+
+        if (last < first || code[last] == '{' || code[last] == ',') {
+            return -1;
+        }
+
+        if (!Character.isLetter(code[first]) && code[first] != '-' && code[first] != '$') {
+            return -1;
+        }
+
+        int end = first;
+
+        while (end < lineEnd && isWordChar(code[end])) {
+            end++;
+        }
+
+        final String name = new String(code, first, end - first);
+
+        if (end < lineEnd && (code[end] == ':' || code[end] == '=')) {
+            // a:hover #Add is a selector with a pseudo class, color: #fff and color:#fff are properties
+            return end + 1 < lineEnd && Character.isLetter(code[end + 1]) && TAGS.contains(name) ? -1 : end + 1;
+        }
+
+        if (end == lineEnd || !Character.isWhitespace(code[end]) || TAGS.contains(name)) {
+            return -1;
+        }
+
+        return end;
+    }
+
+    private static boolean isHexDigit(char c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '$';
+    }
+}
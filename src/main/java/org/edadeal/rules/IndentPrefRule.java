@@ -0,0 +1,85 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Lines must be indented with the configured number of spaces per level, or with "tab"s
+ */
+final class IndentPrefRule implements Rule {
+    @NotNull
+    @Override
+    public String getName() {
+        return "indentPref";
+    }
+
+    @Override
+    public void check(@NotNull Source source, @NotNull String conf, @NotNull List<Violation> violations) {
+        final boolean tabs = conf.equals("tab") || conf.equals("tabs");
+        int size = 0;
+
+        if (!tabs) {
+            try {
+                size = Integer.parseInt(conf);
+            } catch (NumberFormatException e) {
+                return;
+            }
+
+            if (size <= 0) {
+                return;
+            }
+        }
+
+        final char[] code = source.code;
+
+        for (int line = 0; line < source.getLineCount(); line++) {
+            final int lineStart = source.getLineStart(line);
+            final int lineEnd = source.getLineEnd(line);
+
+            int spaces = 0;
+            int tabCount = 0;
+            int i = lineStart;
+
+            for (; i < lineEnd && (code[i] == ' ' || code[i] == '\t'); i++) {
+                if (code[i] == ' ') {
+                    spaces++;
+                } else {
+                    tabCount++;
+                }
+            }
+
+            // blank or comment-only lines, and lines continuing a block comment, are not checked
+            if (i == lineStart || i == lineEnd || code[i] == '\r' || !isIndentation(source, lineStart, i)) {
+                continue;
+            }
+
+            if (tabs && spaces > 0) {
+                violations.add(new Violation(getName(), "Use tabs for indentation", lineStart, i, null));
+            } else if (!tabs && tabCount > 0) {
+                violations.add(new Violation(getName(), "Use spaces for indentation", lineStart, i, null));
+            } else if (!tabs && spaces % size != 0) {
+                violations.add(new Violation(
+                        getName(),
+                        "Indentation should be a multiple of " + size + " spaces",
+                        lineStart,
+                        i,
+                        null
+                ));
+            }
+        }
+    }
+
+    /**
+     * Whitespace blanked out of a block comment is not indentation
+     */
+    private static boolean isIndentation(@NotNull Source source, int lineStart, int end) {
+        for (int i = lineStart; i < end; i++) {
+            if (source.text.charAt(i) != source.code[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,49 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Strings must use the configured quotes, "double" or "single", unless they contain that quote themselves
+ */
+final class QuotePrefRule implements Rule {
+    @NotNull
+    @Override
+    public String getName() {
+        return "quotePref";
+    }
+
+    @Override
+    public void check(@NotNull Source source, @NotNull String conf, @NotNull List<Violation> violations) {
+        final char preferred;
+
+        if (conf.equals("double")) {
+            preferred = '"';
+        } else if (conf.equals("single")) {
+            preferred = '\'';
+        } else {
+            return;
+        }
+
+        for (final Source.Literal literal: source.literals) {
+            if (literal.quote == preferred || !literal.closed) {
+                continue;
+            }
+
+            final String inner = source.text.subSequence(literal.start + 1, literal.end - 1).toString();
+
+            if (inner.indexOf(preferred) >= 0) {
+                continue;
+            }
+
+            violations.add(new Violation(
+                    getName(),
+                    "Use " + conf + " quotes",
+                    literal.start,
+                    literal.end,
+                    preferred + inner.replace("\\" + literal.quote, String.valueOf(literal.quote)) + preferred
+            ));
+        }
+    }
+}
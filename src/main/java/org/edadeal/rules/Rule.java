@@ -0,0 +1,18 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A lexical stlint rule checked in-process, named as in .stlintrc
+ */
+interface Rule {
+    @NotNull
+    String getName();
+
+    /**
+     * @param conf the rule's "conf" value from .stlintrc, or its default
+     */
+    void check(@NotNull Source source, @NotNull String conf, @NotNull List<Violation> violations);
+}
@@ -0,0 +1,145 @@
+package org.edadeal.rules;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which in-process rules are on and with what "conf", as read from a JSON .stlintrc.
+ * A rule may be given as false, true, "conf", ["conf", ...] or {"conf": ..., "enabled": ...},
+ * either under "rules" or at the top level. Rules left out keep the stlint defaults below.
+ */
+final class RulesConfig {
+    private static final Logger log = Logger.getInstance(RulesConfig.class);
+
+    /**
+     * zeroUnits and indentPref are off in stlint unless configured
+     */
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put("color", "uppercase");
+        DEFAULTS.put("semicolons", "never");
+        DEFAULTS.put("quotePref", "double");
+    }
+
+    static final RulesConfig DEFAULT = new RulesConfig(DEFAULTS);
+
+    @NotNull
+    private final Map<String, String> confs;
+
+    private RulesConfig(@NotNull Map<String, String> confs) {
+        this.confs = Collections.unmodifiableMap(confs);
+    }
+
+    /**
+     * @return conf of the rule, or null when the rule is off
+     */
+    @Nullable
+    String getConf(@NotNull String rule) {
+        return confs.get(rule);
+    }
+
+    @NotNull
+    static RulesConfig load(@NotNull String configPath) {
+        if (configPath.isEmpty()) {
+            return DEFAULT;
+        }
+
+        final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(FileUtil.toSystemIndependentName(configPath));
+
+        if (file == null || !file.isValid() || file.isDirectory()) {
+            return DEFAULT;
+        }
+
+        if (file.getName().endsWith(".yaml") || file.getName().endsWith(".yml")) {
+            log.debug("in-process stlint rules read JSON configs only, using defaults for " + configPath);
+            return DEFAULT;
+        }
+
+        try {
+            final JsonReader reader = new JsonReader(new StringReader(LoadTextUtil.loadText(file).toString()));
+            reader.setLenient(true);
+
+            return parse(JsonParser.parseReader(reader));
+        } catch (RuntimeException e) {
+            log.info("could not read " + configPath + ", using default in-process stlint rules", e);
+            return DEFAULT;
+        }
+    }
+
+    @NotNull
+    private static RulesConfig parse(@NotNull JsonElement root) {
+        if (!root.isJsonObject()) {
+            return DEFAULT;
+        }
+
+        JsonObject rules = root.getAsJsonObject();
+
+        if (rules.has("rules") && rules.get("rules").isJsonObject()) {
+            rules = rules.getAsJsonObject("rules");
+        }
+
+        final Map<String, String> confs = new HashMap<>(DEFAULTS);
+
+        for (final Map.Entry<String, JsonElement> rule: rules.entrySet()) {
+            final String name = rule.getKey();
+            final String conf = parseConf(rule.getValue(), DEFAULTS.get(name));
+
+            if (conf != null) {
+                confs.put(name, conf);
+            } else {
+                confs.remove(name);
+            }
+        }
+
+        return new RulesConfig(confs);
+    }
+
+    @Nullable
+    private static String parseConf(@NotNull JsonElement value, @Nullable String defaultConf) {
+        if (value.isJsonNull()) {
+            return defaultConf;
+        }
+
+        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean()) {
+            return value.getAsBoolean() ? defaultConf : null;
+        }
+
+        if (value.isJsonPrimitive()) {
+            return value.getAsString();
+        }
+
+        if (value.isJsonArray()) {
+            return value.getAsJsonArray().size() > 0 ? parseConf(value.getAsJsonArray().get(0), defaultConf) : defaultConf;
+        }
+
+        if (value.isJsonObject()) {
+            final JsonObject object = value.getAsJsonObject();
+            final JsonElement enabled = object.get("enabled");
+
+            if (enabled != null && enabled.isJsonPrimitive() && !enabled.getAsBoolean()) {
+                return null;
+            }
+
+            final JsonElement conf = object.get("conf");
+
+            return conf != null ? parseConf(conf, defaultConf) : defaultConf;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,40 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * With "never", statements must not end with a semicolon. "always" needs to know which lines are
+ * statements, so it is left to stlint.
+ */
+final class SemicolonsRule implements Rule {
+    @NotNull
+    @Override
+    public String getName() {
+        return "semicolons";
+    }
+
+    @Override
+    public void check(@NotNull Source source, @NotNull String conf, @NotNull List<Violation> violations) {
+        if (!conf.equals("never")) {
+            return;
+        }
+
+        final char[] code = source.code;
+
+        for (int line = 0; line < source.getLineCount(); line++) {
+            final int lineStart = source.getLineStart(line);
+
+            int last = source.getLineEnd(line) - 1;
+
+            while (last >= lineStart && Character.isWhitespace(code[last])) {
+                last--;
+            }
+
+            if (last >= lineStart && code[last] == ';') {
+                violations.add(new Violation(getName(), "Unnecessary semicolon", last, last + 1, ""));
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stylus text prepared for lexical rules: comments are blanked out and string contents are masked,
+ * so rules can match on {@link #code} without tripping over either. Offsets are those of the original text.
+ */
+final class Source {
+    static final class Literal {
+        final int start;
+        /**
+         * Offset after the closing quote, or the line end for an unterminated string
+         */
+        final int end;
+        final char quote;
+        final boolean closed;
+
+        Literal(int start, int end, char quote, boolean closed) {
+            this.start = start;
+            this.end = end;
+            this.quote = quote;
+            this.closed = closed;
+        }
+    }
+
+    @NotNull
+    final CharSequence text;
+    @NotNull
+    final char[] code;
+    @NotNull
+    final List<Literal> literals = new ArrayList<>();
+
+    private int[] lineStarts = new int[64];
+    private int lineCount;
+
+    Source(@NotNull CharSequence text) {
+        this.text = text;
+        this.code = new char[text.length()];
+
+        scan();
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    /**
+     * @return offset of the line break ending the line, or the text length for the last one
+     */
+    int getLineEnd(int line) {
+        return line + 1 < lineCount ? lineStarts[line + 1] - 1 : code.length;
+    }
+
+    private void scan() {
+        final int length = text.length();
+
+        boolean blockComment = false;
+
+        addLine(0);
+
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (c == '\n') {
+                code[i] = c;
+                addLine(i + 1);
+                continue;
+            }
+
+            if (blockComment) {
+                code[i] = c == '\r' ? c : ' ';
+
+                if (c == '/' && i > 0 && text.charAt(i - 1) == '*') {
+                    blockComment = false;
+                }
+
+                continue;
+            }
+
+            final char next = i + 1 < length ? text.charAt(i + 1) : 0;
+
+            if (c == '/' && next == '*') {
+                blockComment = true;
+                code[i] = ' ';
+                code[++i] = ' ';
+                continue;
+            }
+
+            if (c == '/' && next == '/' && (i == 0 || text.charAt(i - 1) != ':')) {
+                // a line comment, but not the // of url(http://...)
+                while (i < length && text.charAt(i) != '\n') {
+                    code[i] = text.charAt(i) == '\r' ? '\r' : ' ';
+                    i++;
+                }
+
+                i--;
+                continue;
+            }
+
+            if (c == '"' || c == '\'') {
+                i = scanLiteral(i, c);
+                continue;
+            }
+
+            code[i] = c;
+        }
+    }
+
+    private int scanLiteral(int start, char quote) {
+        final int length = text.length();
+
+        code[start] = quote;
+
+        for (int i = start + 1; i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (c == '\n') {
+                literals.add(new Literal(start, i, quote, false));
+                return i - 1;
+            }
+
+            if (c == '\\' && i + 1 < length && text.charAt(i + 1) != '\n') {
+                code[i] = '_';
+                code[++i] = '_';
+                continue;
+            }
+
+            if (c == quote) {
+                code[i] = quote;
+                literals.add(new Literal(start, i + 1, quote, true));
+                return i;
+            }
+
+            code[i] = '_';
+        }
+
+        literals.add(new Literal(start, length, quote, false));
+
+        return length - 1;
+    }
+
+    private void addLine(int start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+
+        lineStarts[lineCount++] = start;
+    }
+}
@@ -0,0 +1,132 @@
+package org.edadeal.rules;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.edadeal.utils.StlintConfigIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lexical stlint rules checked in-process, so their highlights do not wait for node.
+ * Configured from the same .stlintrc stlint reads; stlint keeps reporting them too, and its report of the same rule
+ * on the same line is left out in favour of the in-process one.
+ */
+public final class StylusRules {
+    private static final List<Rule> RULES = Arrays.asList(
+            new ColorRule(),
+            new SemicolonsRule(),
+            new QuotePrefRule(),
+            new ZeroUnitsRule(),
+            new IndentPrefRule()
+    );
+
+    private static final class Loaded {
+        final long hash;
+        @NotNull
+        final RulesConfig config;
+
+        Loaded(long hash, @NotNull RulesConfig config) {
+            this.hash = hash;
+            this.config = config;
+        }
+    }
+
+    private static final Map<String, Loaded> configs = new ConcurrentHashMap<>();
+
+    private static final class Checked {
+        final long stamp;
+        @NotNull
+        final RulesConfig config;
+        @NotNull
+        final List<Violation> violations;
+
+        Checked(long stamp, @NotNull RulesConfig config, @NotNull List<Violation> violations) {
+            this.stamp = stamp;
+            this.config = config;
+            this.violations = violations;
+        }
+    }
+
+    private static final Key<Checked> CHECKED = Key.create("stlint.fast.rules.checked");
+
+    private StylusRules() {
+    }
+
+    public static boolean isEnabled() {
+        return Registry.is("stlint.fast.rules");
+    }
+
+    /**
+     * Checks the current document text, reusing the result while neither the document nor the config changes
+     */
+    @NotNull
+    public static List<Violation> check(@NotNull Project project, @NotNull VirtualFile file, @NotNull Document document) {
+        final VirtualFile dir = file.getParent();
+
+        if (dir == null) {
+            return Collections.emptyList();
+        }
+
+        final RulesConfig config = getConfig(project, dir);
+        final long stamp = document.getModificationStamp();
+        final Checked checked = document.getUserData(CHECKED);
+
+        if (checked != null && checked.stamp == stamp && checked.config == config) {
+            return checked.violations;
+        }
+
+        final List<Violation> violations = check(config, document.getImmutableCharSequence());
+        document.putUserData(CHECKED, new Checked(stamp, config, violations));
+
+        return violations;
+    }
+
+    @NotNull
+    static List<Violation> check(@NotNull RulesConfig config, @NotNull CharSequence text) {
+        final Source source = new Source(text);
+        final List<Violation> violations = new ArrayList<>();
+
+        for (final Rule rule: RULES) {
+            final String conf = config.getConf(rule.getName());
+
+            if (conf != null) {
+                ProgressManager.checkCanceled();
+                rule.check(source, conf, violations);
+            }
+        }
+
+        return violations;
+    }
+
+    @NotNull
+    private static RulesConfig getConfig(@NotNull Project project, @NotNull VirtualFile dir) {
+        final StlintConfigIndex index = StlintConfigIndex.getInstance(project);
+        final String configPath = index.findConfigPath(dir);
+
+        if (configPath.isEmpty()) {
+            return RulesConfig.DEFAULT;
+        }
+
+        final long hash = index.getConfigHash(configPath);
+        final Loaded loaded = configs.get(configPath);
+
+        if (loaded != null && loaded.hash == hash) {
+            return loaded.config;
+        }
+
+        final RulesConfig config = RulesConfig.load(configPath);
+        configs.put(configPath, new Loaded(hash, config));
+
+        return config;
+    }
+}
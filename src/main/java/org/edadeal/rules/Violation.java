@@ -0,0 +1,26 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One rule violation as a text range of the checked text, with the replacement for that range when the rule knows it
+ */
+public final class Violation {
+    @NotNull
+    public final String rule;
+    @NotNull
+    public final String message;
+    public final int start;
+    public final int end;
+    @Nullable
+    public final String fix;
+
+    Violation(@NotNull String rule, @NotNull String message, int start, int end, @Nullable String fix) {
+        this.rule = rule;
+        this.message = message;
+        this.start = start;
+        this.end = end;
+        this.fix = fix;
+    }
+}
@@ -0,0 +1,98 @@
+package org.edadeal.rules;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * With "never", zero lengths must be written without a unit. Times, angles and percentages keep theirs,
+ * since 0s or 0% are not always interchangeable with 0. "always" cannot tell which unit was meant, so it is left to stlint.
+ */
+final class ZeroUnitsRule implements Rule {
+    private static final Set<String> LENGTH_UNITS = new HashSet<>(Arrays.asList(
+            "px", "em", "rem", "ex", "ch", "vw", "vh", "vmin", "vmax", "cm", "mm", "in", "pt", "pc", "q"
+    ));
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "zeroUnits";
+    }
+
+    @Override
+    public void check(@NotNull Source source, @NotNull String conf, @NotNull List<Violation> violations) {
+        if (!conf.equals("never")) {
+            return;
+        }
+
+        final char[] code = source.code;
+
+        for (int line = 0; line < source.getLineCount(); line++) {
+            final int lineEnd = source.getLineEnd(line);
+
+            int first = source.getLineStart(line);
+
+            while (first < lineEnd && Character.isWhitespace(code[first])) {
+                first++;
+            }
+
+            // selectors and mixin calls are not rewritten, see ColorRule.getValueStart
+            final int value = ColorRule.getValueStart(code, first, lineEnd);
+
+            if (value < 0) {
+                continue;
+            }
+
+            // calc() needs units on zeros, so nothing inside it is reported
+            int depth = 0;
+            int calcDepth = -1;
+
+            for (int i = value; i < lineEnd; i++) {
+                if (code[i] == '(') {
+                    if (calcDepth < 0 && i >= 4 && new String(code, i - 4, 4).equalsIgnoreCase("calc")) {
+                        calcDepth = depth;
+                    }
+
+                    depth++;
+                    continue;
+                }
+
+                if (code[i] == ')') {
+                    depth = Math.max(0, depth - 1);
+
+                    if (depth == calcDepth) {
+                        calcDepth = -1;
+                    }
+
+                    continue;
+                }
+
+                if (calcDepth >= 0 || code[i] != '0' || i > 0 && (ColorRule.isWordChar(code[i - 1]) || code[i - 1] == '.' || code[i - 1] == '#')) {
+                    continue;
+                }
+
+                int end = i + 1;
+
+                while (end < lineEnd && Character.isLetter(code[end])) {
+                    end++;
+                }
+
+                if (end == i + 1 || end < lineEnd && (ColorRule.isWordChar(code[end]) || code[end] == '.')) {
+                    continue;
+                }
+
+                final String unit = new String(code, i + 1, end - i - 1);
+
+                if (LENGTH_UNITS.contains(unit.toLowerCase(Locale.ROOT))) {
+                    violations.add(new Violation(getName(), "No unit needed for 0", i, end, "0"));
+                }
+
+                i = end - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.edadeal.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * 64-bit FNV-1a over the chars of a text, computed without copying it into a String.
+ */
+public final class ContentHash {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private ContentHash() {
+    }
+
+    public static long of(@NotNull CharSequence text) {
+        long hash = OFFSET_BASIS;
+
+        for (int i = 0, length = text.length(); i < length; i++) {
+            final char c = text.charAt(i);
+
+            hash ^= c & 0xff;
+            hash *= PRIME;
+            hash ^= c >>> 8;
+            hash *= PRIME;
+        }
+
+        return hash;
+    }
+}
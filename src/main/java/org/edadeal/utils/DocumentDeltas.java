@@ -0,0 +1,122 @@
+package org.edadeal.utils;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.event.DocumentEvent;
+import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.util.Key;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the edits of documents we lint through a daemon, so a run can send what changed instead of the whole text.
+ * Only documents marked with {@link #track(Document)} are recorded, and only a bounded tail of their history.
+ */
+public final class DocumentDeltas implements DocumentListener {
+    private static final Key<History> HISTORY = Key.create("stlint.document.deltas");
+    private static final int MAX_DELTAS = 256;
+    private static final int MAX_CHARS = 256 * 1024;
+
+    static final class Delta {
+        final transient long from;
+        final transient long to;
+        final int offset;
+        final int length;
+        final String text;
+
+        Delta(long from, long to, int offset, int length, @NotNull String text) {
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
+
+    private static final class History {
+        final List<Delta> deltas = new ArrayList<>();
+        int chars;
+    }
+
+    public static void track(@NotNull Document document) {
+        if (document.getUserData(HISTORY) == null) {
+            document.putUserData(HISTORY, new History());
+        }
+    }
+
+    /**
+     * @return the edits turning version {@code from} of the document into version {@code to}, or null when they are not all known
+     */
+    @Nullable
+    static List<Delta> between(@NotNull Document document, long from, long to) {
+        final History history = document.getUserData(HISTORY);
+
+        if (history == null) {
+            return null;
+        }
+
+        synchronized (history) {
+            if (from == to) {
+                return new ArrayList<>();
+            }
+
+            int first = -1;
+
+            for (int i = 0; i < history.deltas.size(); i++) {
+                if (history.deltas.get(i).from == from) {
+                    first = i;
+                    break;
+                }
+            }
+
+            if (first < 0) {
+                return null;
+            }
+
+            final List<Delta> chain = new ArrayList<>();
+            long version = from;
+
+            for (int i = first; i < history.deltas.size() && version != to; i++) {
+                final Delta delta = history.deltas.get(i);
+
+                if (delta.from != version) {
+                    return null;
+                }
+
+                chain.add(delta);
+                version = delta.to;
+            }
+
+            return version == to ? chain : null;
+        }
+    }
+
+    @Override
+    public void documentChanged(@NotNull DocumentEvent event) {
+        final Document document = event.getDocument();
+        final History history = document.getUserData(HISTORY);
+
+        if (history == null) {
+            return;
+        }
+
+        final Delta delta = new Delta(
+                event.getOldTimeStamp(),
+                document.getModificationStamp(),
+                event.getOffset(),
+                event.getOldLength(),
+                event.getNewFragment().toString()
+        );
+
+        synchronized (history) {
+            history.deltas.add(delta);
+            history.chars += delta.text.length();
+
+            while (!history.deltas.isEmpty() && (history.deltas.size() > MAX_DELTAS || history.chars > MAX_CHARS)) {
+                history.chars -= history.deltas.remove(0).text.length();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.edadeal.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram over microseconds: power-of-two buckets split into four linear steps each,
+ * so percentiles are accurate to about 25% at any scale.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long micros) {
+        final long value = Math.max(0, micros);
+
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumMicros() {
+        return sum.sum();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    public long getMeanMicros() {
+        final long total = count.sum();
+
+        return total == 0 ? 0 : sum.sum() / total;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return upper bound of the bucket holding the quantile, 0 when nothing was recorded
+     */
+    public long getPercentileMicros(double quantile) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMaxMicros());
+            }
+        }
+
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int power = 63 - Long.numberOfLeadingZeros(value);
+        final int step = (int) ((value >>> (power - 2)) & (SUB_BUCKETS - 1));
+
+        return Math.min(BUCKETS - 1, (power - 1) * SUB_BUCKETS + step);
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int power = index / SUB_BUCKETS + 1;
+        final int step = index % SUB_BUCKETS;
+
+        return (1L << power) + ((long) (step + 1) << (power - 2)) - 1;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMeanMicros() + "us";
+    }
+}
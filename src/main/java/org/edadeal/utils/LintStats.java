@@ -0,0 +1,205 @@
+package org.edadeal.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counters of the lint pipeline since the IDE started, cheap enough to record on every run.
+ */
+public final class LintStats {
+    private LintStats() {
+    }
+
+    public enum Stage {
+        /** finding stlint, node and the config for a file */
+        RESOLVE,
+        /** waiting for a slot in the lint scheduler */
+        QUEUE,
+        /** starting a node process */
+        SPAWN,
+        /** a spawned stlint process from start to exit */
+        RUN,
+        /** a request to a resident daemon */
+        DAEMON,
+        /** reading and mapping stlint's report */
+        PARSE,
+        /** TypeCheck.errors end to end, cache hits included */
+        TOTAL
+    }
+
+    public enum Counter {
+        SPAWNS,
+        DAEMON_REQUESTS,
+        DAEMON_RESYNCS,
+        CACHE_HITS,
+        DISK_CACHE_HITS,
+        CACHE_MISSES,
+        TIMEOUTS,
+        CANCELLATIONS
+    }
+
+    private static final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private static final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+
+    static {
+        for (final Stage stage: Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+
+        for (final Counter counter: Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+
+    public static void record(@NotNull Stage stage, long startNanos) {
+        stages.get(stage).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    public static void count(@NotNull Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    @NotNull
+    public static LatencyHistogram get(@NotNull Stage stage) {
+        return stages.get(stage);
+    }
+
+    public static long get(@NotNull Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * @return share of TypeCheck.errors calls answered from the memory or disk cache
+     */
+    public static double getCacheHitRate() {
+        final long hits = get(Counter.CACHE_HITS) + get(Counter.DISK_CACHE_HITS);
+        final long total = hits + get(Counter.CACHE_MISSES);
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public static void reset() {
+        stages.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    @NotNull
+    public static String toText() {
+        final StringBuilder builder = new StringBuilder();
+
+        builder.append(String.format(Locale.ROOT, "%-8s %8s %9s %9s %9s %9s %9s%n", "stage", "count", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+        for (final Stage stage: Stage.values()) {
+            final LatencyHistogram histogram = get(stage);
+
+            builder.append(String.format(Locale.ROOT, "%-8s %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    name(stage),
+                    histogram.getCount(),
+                    millis(histogram.getMeanMicros()),
+                    millis(histogram.getPercentileMicros(0.5)),
+                    millis(histogram.getPercentileMicros(0.95)),
+                    millis(histogram.getPercentileMicros(0.99)),
+                    millis(histogram.getMaxMicros())
+            ));
+        }
+
+        builder.append('\n');
+
+        for (final Counter counter: Counter.values()) {
+            builder.append(String.format(Locale.ROOT, "%-16s %d%n", name(counter), get(counter)));
+        }
+
+        builder.append(String.format(Locale.ROOT, "%-16s %.1f%%%n", "cache_hit_rate", getCacheHitRate() * 100));
+        builder.append(String.format(Locale.ROOT, "%-16s %d runs, %d ms avg%n", "compile_cold", NodeCompileCache.getColdRuns(), NodeCompileCache.getColdAverageMillis()));
+        builder.append(String.format(Locale.ROOT, "%-16s %d runs, %d ms avg%n", "compile_warm", NodeCompileCache.getWarmRuns(), NodeCompileCache.getWarmAverageMillis()));
+
+        return builder.toString();
+    }
+
+    @NotNull
+    public static String toCsv() {
+        final StringBuilder builder = new StringBuilder("metric,stage,count,mean_ms,p50_ms,p95_ms,p99_ms,max_ms,value\n");
+
+        for (final Stage stage: Stage.values()) {
+            final LatencyHistogram histogram = get(stage);
+
+            builder.append(String.format(Locale.ROOT, "stage,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%n",
+                    name(stage),
+                    histogram.getCount(),
+                    millis(histogram.getMeanMicros()),
+                    millis(histogram.getPercentileMicros(0.5)),
+                    millis(histogram.getPercentileMicros(0.95)),
+                    millis(histogram.getPercentileMicros(0.99)),
+                    millis(histogram.getMaxMicros())
+            ));
+        }
+
+        for (final Counter counter: Counter.values()) {
+            builder.append("counter,").append(name(counter)).append(",,,,,,,").append(get(counter)).append('\n');
+        }
+
+        builder.append(String.format(Locale.ROOT, "gauge,cache_hit_rate,,,,,,,%.4f%n", getCacheHitRate()));
+        builder.append("gauge,compile_cold_avg_ms,").append(NodeCompileCache.getColdRuns()).append(",,,,,,").append(NodeCompileCache.getColdAverageMillis()).append('\n');
+        builder.append("gauge,compile_warm_avg_ms,").append(NodeCompileCache.getWarmRuns()).append(",,,,,,").append(NodeCompileCache.getWarmAverageMillis()).append('\n');
+
+        return builder.toString();
+    }
+
+    /**
+     * Prometheus text exposition format, as a summary per stage
+     */
+    @NotNull
+    public static String toPrometheus() {
+        final StringBuilder builder = new StringBuilder();
+
+        builder.append("# HELP stlint_stage_duration_seconds Time spent in each stage of the stlint pipeline\n");
+        builder.append("# TYPE stlint_stage_duration_seconds summary\n");
+
+        for (final Stage stage: Stage.values()) {
+            final LatencyHistogram histogram = get(stage);
+            final String label = "stage=\"" + name(stage) + "\"";
+
+            for (final double quantile: new double[]{0.5, 0.95, 0.99}) {
+                builder.append(String.format(Locale.ROOT, "stlint_stage_duration_seconds{%s,quantile=\"%s\"} %.6f%n",
+                        label, quantile, seconds(histogram.getPercentileMicros(quantile))));
+            }
+
+            builder.append(String.format(Locale.ROOT, "stlint_stage_duration_seconds_sum{%s} %.6f%n", label, seconds(histogram.getSumMicros())));
+            builder.append(String.format(Locale.ROOT, "stlint_stage_duration_seconds_count{%s} %d%n", label, histogram.getCount()));
+        }
+
+        for (final Counter counter: Counter.values()) {
+            final String metric = "stlint_" + name(counter) + "_total";
+
+            builder.append("# TYPE ").append(metric).append(" counter\n");
+            builder.append(metric).append(' ').append(get(counter)).append('\n');
+        }
+
+        builder.append("# TYPE stlint_cache_hit_ratio gauge\n");
+        builder.append(String.format(Locale.ROOT, "stlint_cache_hit_ratio %.4f%n", getCacheHitRate()));
+
+        builder.append("# TYPE stlint_compile_cache_spawn_seconds gauge\n");
+        builder.append(String.format(Locale.ROOT, "stlint_compile_cache_spawn_seconds{cache=\"cold\"} %.3f%n", NodeCompileCache.getColdAverageMillis() / 1000.0));
+        builder.append(String.format(Locale.ROOT, "stlint_compile_cache_spawn_seconds{cache=\"warm\"} %.3f%n", NodeCompileCache.getWarmAverageMillis() / 1000.0));
+
+        return builder.toString();
+    }
+
+    @NotNull
+    private static String name(@NotNull Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double seconds(long micros) {
+        return micros / 1_000_000.0;
+    }
+}
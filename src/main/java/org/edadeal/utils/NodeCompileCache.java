@@ -0,0 +1,160 @@
+package org.edadeal.utils;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * V8 compile cache directories handed to spawned stlint runs through NODE_COMPILE_CACHE, one per stlint package and version.
+ * Node versions without module.enableCompileCache simply ignore the variable.
+ */
+public final class NodeCompileCache {
+    private NodeCompileCache() {
+    }
+
+    private static final Logger log = Logger.getInstance(NodeCompileCache.class);
+    static final String ENV = "NODE_COMPILE_CACHE";
+    /**
+     * Next to each cache directory, a file naming the stlint package directory it belongs to
+     */
+    private static final String OWNER_SUFFIX = ".package";
+
+    private static final Map<String, File> dirs = new ConcurrentHashMap<>();
+
+    private static final LongAdder coldRuns = new LongAdder();
+    private static final LongAdder coldNanos = new LongAdder();
+    private static final LongAdder warmRuns = new LongAdder();
+    private static final LongAdder warmNanos = new LongAdder();
+
+    /**
+     * @return null when the mode is off or the package is unknown
+     */
+    @Nullable
+    static File getDir(@NotNull String exe) {
+        if (!Registry.is("stlint.node.compile.cache")) {
+            return null;
+        }
+
+        final StlintPackage stlintPackage = StlintPackage.forExe(exe);
+
+        if (stlintPackage.dir == null) {
+            return null;
+        }
+
+        final String key = FileUtil.sanitizeFileName(stlintPackage.version) + '-'
+                + Long.toHexString(ContentHash.of(stlintPackage.dir));
+
+        return dirs.computeIfAbsent(key, it -> create(it, stlintPackage.dir));
+    }
+
+    /**
+     * Forgets the known packages, so the next run checks again which caches belong to packages that are gone
+     */
+    static void invalidate() {
+        dirs.clear();
+    }
+
+    static boolean isWarm(@NotNull File dir) {
+        final String[] entries = dir.list();
+
+        return entries != null && entries.length > 0;
+    }
+
+    static void record(boolean warm, long nanos) {
+        if (warm) {
+            warmRuns.increment();
+            warmNanos.add(nanos);
+        } else {
+            coldRuns.increment();
+            coldNanos.add(nanos);
+        }
+    }
+
+    public static long getColdRuns() {
+        return coldRuns.sum();
+    }
+
+    public static long getWarmRuns() {
+        return warmRuns.sum();
+    }
+
+    public static long getColdAverageMillis() {
+        return average(coldNanos.sum(), coldRuns.sum());
+    }
+
+    public static long getWarmAverageMillis() {
+        return average(warmNanos.sum(), warmRuns.sum());
+    }
+
+    private static long average(long nanos, long runs) {
+        return runs == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos / runs);
+    }
+
+    /**
+     * Caches of packages whose directory is gone, or of an older version of this package, are dropped when a new one is created.
+     * Caches of other packages still on disk are kept, whether or not this IDE session has run them yet.
+     */
+    @NotNull
+    private static File create(@NotNull String key, @NotNull String packageDir) {
+        final File root = new File(PathManager.getSystemPath(), "stlint/compile-cache");
+        final File dir = new File(root, key);
+
+        final File[] existing = root.listFiles(File::isDirectory);
+
+        if (existing != null) {
+            for (final File other: existing) {
+                if (other.getName().equals(key)) {
+                    continue;
+                }
+
+                final String owner = readOwner(root, other.getName());
+
+                if (owner == null || owner.equals(packageDir) || !new File(owner).isDirectory()) {
+                    log.info("pruning stale stlint compile cache " + other);
+                    FileUtil.delete(other);
+                    FileUtil.delete(getOwnerFile(root, other.getName()));
+                }
+            }
+        }
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            log.info("cannot create stlint compile cache " + dir);
+        }
+
+        try {
+            FileUtil.writeToFile(getOwnerFile(root, key), packageDir);
+        } catch (IOException e) {
+            log.info("cannot record the owner of stlint compile cache " + dir, e);
+        }
+
+        return dir;
+    }
+
+    @Nullable
+    private static String readOwner(@NotNull File root, @NotNull String key) {
+        final File file = getOwnerFile(root, key);
+
+        try {
+            return file.isFile() ? FileUtil.loadFile(file, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            log.info(e);
+            return null;
+        }
+    }
+
+    @NotNull
+    private static File getOwnerFile(@NotNull File root, @NotNull String key) {
+        return new File(root, key + OWNER_SUFFIX);
+    }
+}
@@ -1,7 +1,12 @@
 package org.edadeal.utils;
 
 import com.google.common.base.Joiner;
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef;
+import com.intellij.javascript.nodejs.interpreter.local.NodeJsLocalInterpreter;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.SystemInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 
@@ -14,6 +19,13 @@ public final class NodeFinder {
         return SystemInfo.isWindows ? baseBinName + ".cmd" : baseBinName;
     }
 
+    @Nullable
+    public static String getInterpreterPath(@NotNull Project project, @NotNull NodeJsInterpreterRef ref) {
+        NodeJsLocalInterpreter interpreter = NodeJsLocalInterpreter.tryCast(ref.resolve(project));
+
+        return interpreter != null ? interpreter.getInterpreterSystemDependentPath() : null;
+    }
+
     public static File resolvePath(File root, String first, String second, String third) {
         String path = buildPath(first, second, third);
 
@@ -4,19 +4,48 @@ import com.google.common.base.Charsets;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
 import com.intellij.execution.process.*;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.util.Key;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 public final class NodeRunner {
     private NodeRunner() {
     }
 
+    private static final int INPUT_CHUNK = 8192;
+    private static final int CANCEL_POLL_INTERVAL = 20;
+
+    public interface StreamConsumer {
+        void consume(@NotNull Reader stdout) throws IOException;
+    }
+
     @NotNull
     public static ProcessOutput execute(@NotNull GeneralCommandLine commandLine, int timeoutInMilliseconds) throws ExecutionException {
+        return execute(commandLine, timeoutInMilliseconds, null, null);
+    }
+
+    /**
+     * Runs the command, killing it as soon as the indicator is cancelled.
+     *
+     * @throws ProcessCanceledException when the indicator was cancelled before the process exited
+     */
+    @NotNull
+    public static ProcessOutput execute(
+            @NotNull GeneralCommandLine commandLine,
+            int timeoutInMilliseconds,
+            @Nullable CharSequence input,
+            @Nullable ProgressIndicator indicator
+    ) throws ExecutionException {
         String command = commandLine.getCommandLineString();
 
-        Process process = commandLine.createProcess();
+        Process process = createProcess(commandLine);
 
         OSProcessHandler processHandler = new OSProcessHandler(process, command, Charsets.UTF_8);
 
@@ -34,7 +63,11 @@ public final class NodeRunner {
 
         processHandler.startNotify();
 
-        if (processHandler.waitFor(timeoutInMilliseconds)) {
+        if (input != null) {
+            writeInput(process, input);
+        }
+
+        if (waitFor(processHandler, timeoutInMilliseconds, indicator)) {
             output.setExitCode(processHandler.getExitCode());
         } else {
             processHandler.destroyProcess();
@@ -42,9 +75,171 @@ public final class NodeRunner {
         }
 
         if (output.isTimeout()) {
+            LintStats.count(LintStats.Counter.TIMEOUTS);
             throw new ExecutionException("Command '" + commandLine.getCommandLineString() + "' is timed out.");
         }
 
         return output;
     }
+
+    /**
+     * Like {@link #execute(GeneralCommandLine, int, CharSequence, ProgressIndicator)}, but stdout is handed to the consumer
+     * as it arrives instead of being buffered; the returned output carries only stderr and the exit code.
+     *
+     * @throws ProcessCanceledException when the indicator was cancelled before the process exited
+     */
+    @NotNull
+    public static ProcessOutput execute(
+            @NotNull GeneralCommandLine commandLine,
+            int timeoutInMilliseconds,
+            @Nullable CharSequence input,
+            @Nullable ProgressIndicator indicator,
+            @NotNull StreamConsumer consumer
+    ) throws ExecutionException {
+        final Process process = createProcess(commandLine);
+        final ProcessOutput output = new ProcessOutput();
+
+        final Future<String> stderr = ProcessIOExecutorService.INSTANCE.submit(() -> readFully(process.getErrorStream()));
+        final Future<Object> stdout = ProcessIOExecutorService.INSTANCE.submit(() -> {
+            try (Reader reader = new InputStreamReader(process.getInputStream(), Charsets.UTF_8)) {
+                try {
+                    consumer.consume(reader);
+                } finally {
+                    // an early return or a parse error must not leave the process blocked on a full pipe
+                    drain(reader);
+                }
+            }
+
+            return null;
+        });
+
+        try {
+            if (input != null) {
+                writeInput(process, input);
+            }
+
+            if (!waitFor(process, timeoutInMilliseconds, indicator)) {
+                process.destroy();
+                LintStats.count(LintStats.Counter.TIMEOUTS);
+                throw new ExecutionException("Command '" + commandLine.getCommandLineString() + "' is timed out.");
+            }
+
+            output.setExitCode(process.exitValue());
+            stdout.get();
+            output.appendStderr(stderr.get());
+        } catch (InterruptedException e) {
+            process.destroy();
+            throw new ExecutionException(e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new ExecutionException(e.getCause());
+        }
+
+        return output;
+    }
+
+    @NotNull
+    private static Process createProcess(@NotNull GeneralCommandLine commandLine) throws ExecutionException {
+        final long start = System.nanoTime();
+
+        try {
+            return commandLine.createProcess();
+        } finally {
+            LintStats.count(LintStats.Counter.SPAWNS);
+            LintStats.record(LintStats.Stage.SPAWN, start);
+        }
+    }
+
+    private static boolean waitFor(
+            @NotNull Process process,
+            int timeoutInMilliseconds,
+            @Nullable ProgressIndicator indicator
+    ) throws InterruptedException {
+        if (indicator == null) {
+            return process.waitFor(timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+
+        final long deadline = System.currentTimeMillis() + timeoutInMilliseconds;
+
+        while (!process.waitFor(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (indicator.isCanceled()) {
+                process.destroy();
+                LintStats.count(LintStats.Counter.CANCELLATIONS);
+                throw new ProcessCanceledException();
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @NotNull
+    private static String readFully(@NotNull InputStream stream) throws IOException {
+        try (Reader reader = new InputStreamReader(stream, Charsets.UTF_8)) {
+            final StringBuilder builder = new StringBuilder();
+            final char[] buffer = new char[INPUT_CHUNK];
+
+            int read;
+
+            while ((read = reader.read(buffer)) >= 0) {
+                builder.append(buffer, 0, read);
+            }
+
+            return builder.toString();
+        }
+    }
+
+    private static void drain(@NotNull Reader reader) throws IOException {
+        final char[] buffer = new char[INPUT_CHUNK];
+
+        while (reader.read(buffer) >= 0) {
+            // discard
+        }
+    }
+
+    private static boolean waitFor(
+            @NotNull ProcessHandler processHandler,
+            int timeoutInMilliseconds,
+            @Nullable ProgressIndicator indicator
+    ) {
+        if (indicator == null) {
+            return processHandler.waitFor(timeoutInMilliseconds);
+        }
+
+        final long deadline = System.currentTimeMillis() + timeoutInMilliseconds;
+
+        while (!processHandler.waitFor(CANCEL_POLL_INTERVAL)) {
+            if (indicator.isCanceled()) {
+                processHandler.destroyProcess();
+                LintStats.count(LintStats.Counter.CANCELLATIONS);
+                throw new ProcessCanceledException();
+            }
+
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void writeInput(@NotNull Process process, @NotNull CharSequence input) throws ExecutionException {
+        try (Writer writer = new OutputStreamWriter(process.getOutputStream(), Charsets.UTF_8)) {
+            write(writer, input);
+        } catch (IOException e) {
+            process.destroy();
+            throw new ExecutionException(e);
+        }
+    }
+
+    /**
+     * Writes a document snapshot in chunks so the whole text is never copied into one String.
+     */
+    static void write(@NotNull Writer writer, @NotNull CharSequence input) throws IOException {
+        for (int start = 0; start < input.length(); start += INPUT_CHUNK) {
+            writer.append(input, start, Math.min(input.length(), start + INPUT_CHUNK));
+        }
+    }
 }
\ No newline at end of file
@@ -1,26 +1,21 @@
 package org.edadeal.utils;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
 
 import java.io.File;
 
 public class StlintConfigFinder {
     static public String findPath(Project project, File workingDir) {
-        String cwd = project.getBasePath();
+        VirtualFile dir = LocalFileSystem.getInstance().findFileByIoFile(workingDir);
 
-        File localConfig = NodeFinder.resolvePath(workingDir, StylusLinterConfigFileType.STYLINTRC, "", "");
-
-        if (localConfig.exists()) {
-            return localConfig.getAbsolutePath();
+        if (dir == null) {
+            return null;
         }
 
-        assert cwd != null;
-        File globalConfig = NodeFinder.resolvePath(new File(cwd), StylusLinterConfigFileType.STYLINTRC, "", "");
-
-        if (globalConfig.exists()) {
-            return globalConfig.getAbsolutePath();
-        }
+        String path = StlintConfigIndex.getInstance(project).findConfigPath(dir);
 
-        return null;
+        return path.isEmpty() ? null : path;
     }
 }
@@ -0,0 +1,216 @@
+package org.edadeal.utils;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import org.edadeal.settings.StLintUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nearest stlint config for every directory, found by walking up the tree like stlint does,
+ * plus content hashes of config files. Kept current from VFS events.
+ */
+public final class StlintConfigIndex implements Disposable {
+    private static final Logger log = Logger.getInstance(StlintConfigIndex.class);
+
+    private static final class Hash {
+        final long stamp;
+        final long value;
+
+        Hash(long stamp, long value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Optional<VirtualFile>> configs = new ConcurrentHashMap<>();
+    private final Map<String, Hash> hashes = new ConcurrentHashMap<>();
+
+    public StlintConfigIndex(@NotNull Project project) {
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                for (final VFileEvent event: events) {
+                    if (changesLocation(event)) {
+                        configs.clear();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static StlintConfigIndex getInstance(@NotNull Project project) {
+        return project.getService(StlintConfigIndex.class);
+    }
+
+    @Nullable
+    public VirtualFile findConfig(@NotNull VirtualFile dir) {
+        final Optional<VirtualFile> cached = configs.get(dir.getPath());
+
+        if (cached != null && (!cached.isPresent() || cached.get().isValid())) {
+            return cached.orElse(null);
+        }
+
+        final List<String> visited = new ArrayList<>();
+
+        Optional<VirtualFile> found = Optional.empty();
+
+        for (VirtualFile current = dir; current != null; current = current.getParent()) {
+            final Optional<VirtualFile> known = configs.get(current.getPath());
+
+            if (known != null && (!known.isPresent() || known.get().isValid())) {
+                found = known;
+                break;
+            }
+
+            visited.add(current.getPath());
+
+            final VirtualFile config = findConfigIn(current);
+
+            if (config != null) {
+                found = Optional.of(config);
+                break;
+            }
+        }
+
+        for (final String path: visited) {
+            configs.put(path, found);
+        }
+
+        return found.orElse(null);
+    }
+
+    /**
+     * @return empty string when there is no config for the directory
+     */
+    @NotNull
+    public String findConfigPath(@NotNull VirtualFile dir) {
+        final VirtualFile config = findConfig(dir);
+
+        return config != null ? FileUtil.toSystemDependentName(config.getPath()) : "";
+    }
+
+    /**
+     * Hash of the config text, recomputed only when the file changes; 0 when there is no such file
+     */
+    public long getConfigHash(@NotNull String configPath) {
+        if (configPath.isEmpty()) {
+            return 0;
+        }
+
+        final VirtualFile config = LocalFileSystem.getInstance().findFileByPath(FileUtil.toSystemIndependentName(configPath));
+
+        if (config == null || !config.isValid() || config.isDirectory()) {
+            return 0;
+        }
+
+        final long stamp = config.getModificationStamp();
+        final Hash hash = hashes.get(config.getPath());
+
+        if (hash != null && hash.stamp == stamp) {
+            return hash.value;
+        }
+
+        long value;
+
+        try {
+            value = ContentHash.of(LoadTextUtil.loadText(config));
+        } catch (RuntimeException e) {
+            log.info(e);
+            value = stamp;
+        }
+
+        hashes.put(config.getPath(), new Hash(stamp, value));
+
+        return value;
+    }
+
+    @Nullable
+    private static VirtualFile findConfigIn(@NotNull VirtualFile dir) {
+        // .stlintrc was the only name looked up before, keep it first
+        final VirtualFile rc = dir.findChild(StylusLinterConfigFileType.STYLINTRC);
+
+        if (rc != null && !rc.isDirectory()) {
+            return rc;
+        }
+
+        for (final String name: StLintUtil.CONFIG_FILE_NAMES) {
+            final VirtualFile config = dir.findChild(name);
+
+            if (config != null && !config.isDirectory()) {
+                return config;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean changesLocation(@NotNull VFileEvent event) {
+        if (event instanceof VFileContentChangeEvent) {
+            return false;
+        }
+
+        if (isConfigName(event.getPath())) {
+            return true;
+        }
+
+        if (event instanceof VFilePropertyChangeEvent) {
+            final VFilePropertyChangeEvent change = (VFilePropertyChangeEvent) event;
+
+            if (VirtualFile.PROP_NAME.equals(change.getPropertyName())) {
+                // the event and its file already carry the new name, renaming a config away shows only in the old one
+                return isConfigName(change.getOldPath())
+                        || change.getOldValue() instanceof String && isConfigName((String) change.getOldValue())
+                        || change.getFile().isDirectory();
+            }
+
+            return false;
+        }
+
+        if (event instanceof VFileMoveEvent && isConfigName(((VFileMoveEvent) event).getOldPath())) {
+            return true;
+        }
+
+        if (event instanceof VFileCreateEvent) {
+            return ((VFileCreateEvent) event).isDirectory();
+        }
+
+        final VirtualFile file = event.getFile();
+
+        return file != null && file.isDirectory();
+    }
+
+    private static boolean isConfigName(@NotNull String path) {
+        final String name = path.substring(path.lastIndexOf('/') + 1);
+
+        for (final String configName: StLintUtil.CONFIG_FILE_NAMES) {
+            if (configName.equals(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void dispose() {
+        configs.clear();
+        hashes.clear();
+    }
+}
@@ -3,6 +3,7 @@ import com.intellij.javascript.nodejs.util.NodePackageRef;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.edadeal.settings.StLintState;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.Objects;
@@ -10,19 +11,28 @@ import java.util.Objects;
 public class StlintExeFinder {
     private static final Logger log = Logger.getInstance(StlintExeFinder.class);
 
-    static public String getPath(Project project, StLintState state) {
+    /**
+     * @return path of the stlint package chosen in settings, null when it is detected automatically
+     */
+    @Nullable
+    static public String getConfiguredPackagePath(StLintState state) {
         NodePackageRef pack = state.getNodePackageRef();
 
-        String packagePath = null;
-
         if (pack.isConstant()) {
             try {
-                packagePath = Objects.requireNonNull(pack.getConstantPackage()).getSystemDependentPath();
+                String packagePath = Objects.requireNonNull(pack.getConstantPackage()).getSystemDependentPath();
+                return packagePath.isEmpty() ? null : packagePath;
             } catch (NullPointerException e) {
                 log.info(e);
             }
         }
 
+        return null;
+    }
+
+    static public String getPath(Project project, StLintState state) {
+        String packagePath = getConfiguredPackagePath(state);
+
         if (packagePath == null || packagePath.isEmpty()) {
             File tmpDir = NodeFinder.resolvePath(
                     new File(Objects.requireNonNull(project.getBasePath())),
@@ -0,0 +1,214 @@
+package org.edadeal.utils;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import org.edadeal.settings.StLintState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps every directory to the nearest node_modules/.bin/stlint above it.
+ * Answers are cached per directory and dropped only when node_modules or package.json change on disk.
+ */
+public final class StlintExeResolver implements Disposable {
+    private static final String NODE_MODULES = "node_modules";
+    private static final String CONFIGURED = "\0configured\0";
+
+    public static final class Toolchain {
+        @NotNull
+        public final String exe;
+        /**
+         * Directory holding the node_modules stlint came from, used as the working directory of the run
+         */
+        @NotNull
+        public final String root;
+
+        Toolchain(@NotNull String exe, @NotNull String root) {
+            this.exe = exe;
+            this.root = root;
+        }
+    }
+
+    private final Project project;
+    private final Map<String, Optional<Toolchain>> toolchains = new ConcurrentHashMap<>();
+
+    public StlintExeResolver(@NotNull Project project) {
+        this.project = project;
+
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                final List<String> changed = new ArrayList<>();
+
+                for (final VFileEvent event: events) {
+                    if (isToolchainEvent(event)) {
+                        changed.add(event.getPath());
+
+                        final String oldPath = getOldPath(event);
+
+                        if (oldPath != null) {
+                            changed.add(oldPath);
+                        }
+                    }
+                }
+
+                if (!changed.isEmpty()) {
+                    invalidate(changed);
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static StlintExeResolver getInstance(@NotNull Project project) {
+        return project.getService(StlintExeResolver.class);
+    }
+
+    @Nullable
+    public Toolchain resolve(@NotNull VirtualFile dir, @NotNull StLintState state) {
+        final String configured = StlintExeFinder.getConfiguredPackagePath(state);
+
+        if (configured != null) {
+            return toolchains.computeIfAbsent(CONFIGURED + configured, key -> Optional.ofNullable(resolveConfigured(state))).orElse(null);
+        }
+
+        final Optional<Toolchain> cached = toolchains.get(dir.getPath());
+
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        final VirtualFile projectDir = ProjectUtil.guessProjectDir(project);
+        final List<String> visited = new ArrayList<>();
+
+        Optional<Toolchain> found = Optional.empty();
+
+        for (VirtualFile current = dir; current != null; current = current.getParent()) {
+            final Optional<Toolchain> known = toolchains.get(current.getPath());
+
+            if (known != null) {
+                found = known;
+                break;
+            }
+
+            visited.add(current.getPath());
+
+            final VirtualFile exe = current.findFileByRelativePath(NODE_MODULES + "/.bin/" + NodeFinder.getBinName("stlint"));
+
+            if (exe != null && !exe.isDirectory()) {
+                found = Optional.of(new Toolchain(
+                        FileUtil.toSystemDependentName(exe.getPath()),
+                        FileUtil.toSystemDependentName(current.getPath())
+                ));
+                break;
+            }
+
+            if (current.equals(projectDir)) {
+                break;
+            }
+        }
+
+        for (final String path: visited) {
+            toolchains.put(path, found);
+        }
+
+        return found.orElse(null);
+    }
+
+    public void invalidate() {
+        toolchains.clear();
+        StlintPackage.invalidate();
+    }
+
+    /**
+     * Once per batch of events, however many of them touch the toolchain
+     */
+    private void invalidate(@NotNull List<String> paths) {
+        invalidate();
+
+        for (final String path: paths) {
+            if (path.contains("/" + NODE_MODULES + "/stlint") || path.contains("/" + NODE_MODULES + "/.bin")) {
+                StylusLinterDaemonPool.getInstance().stopAll();
+                return;
+            }
+        }
+    }
+
+    @Nullable
+    private Toolchain resolveConfigured(@NotNull StLintState state) {
+        final String exe = StlintExeFinder.getPath(project, state);
+
+        if (exe == null) {
+            return null;
+        }
+
+        final String basePath = project.getBasePath();
+
+        return new Toolchain(exe, basePath != null ? basePath : new File(exe).getParent());
+    }
+
+    /**
+     * Only node_modules, .bin and package.json changes matter, plus moving or deleting a directory some cached
+     * toolchain lives under; other directory churn leaves the cache alone
+     */
+    private boolean isToolchainEvent(@NotNull VFileEvent event) {
+        if (isToolchainPath(event.getPath())) {
+            return true;
+        }
+
+        final String oldPath = getOldPath(event);
+
+        return oldPath != null && (isToolchainPath(oldPath) || containsToolchain(oldPath));
+    }
+
+    /**
+     * Where a moved, renamed or deleted file was
+     */
+    @Nullable
+    private static String getOldPath(@NotNull VFileEvent event) {
+        if (event instanceof VFileMoveEvent) {
+            return ((VFileMoveEvent) event).getOldPath();
+        }
+
+        if (event instanceof VFilePropertyChangeEvent && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+            return ((VFilePropertyChangeEvent) event).getOldPath();
+        }
+
+        return event instanceof VFileDeleteEvent ? event.getPath() : null;
+    }
+
+    private static boolean isToolchainPath(@NotNull String path) {
+        return path.contains("/" + NODE_MODULES + "/") || path.endsWith("/" + NODE_MODULES)
+                || path.endsWith("/.bin") || path.endsWith("/package.json");
+    }
+
+    private boolean containsToolchain(@NotNull String dir) {
+        final String prefix = FileUtil.toSystemDependentName(dir);
+
+        for (final Optional<Toolchain> toolchain: toolchains.values()) {
+            if (toolchain.isPresent() && FileUtil.isAncestor(prefix, toolchain.get().root, false)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void dispose() {
+        toolchains.clear();
+    }
+}
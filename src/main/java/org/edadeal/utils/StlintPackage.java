@@ -0,0 +1,146 @@
+package org.edadeal.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.edadeal.settings.StLintUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What we know about the stlint package behind a resolved `.bin/stlint` executable.
+ */
+public final class StlintPackage {
+    private static final Logger log = Logger.getInstance(StlintPackage.class);
+    private static final Gson gson = new Gson();
+    private static final int PROBE_TIME_OUT = (int) TimeUnit.SECONDS.toMillis(10L);
+    private static final Map<String, StlintPackage> packages = new ConcurrentHashMap<>();
+
+    private static class PackageJson {
+        String version;
+        JsonElement bin;
+    }
+
+    @Nullable
+    public final String dir;
+    @NotNull
+    public final String version;
+    /**
+     * The JS file the `.bin` shim runs, taken from the "bin" field of package.json
+     */
+    @Nullable
+    public final String entry;
+    @NotNull
+    private final String exe;
+    private volatile Boolean supportsStdin;
+
+    private StlintPackage(@NotNull String exe, @Nullable String dir, @NotNull String version, @Nullable String entry) {
+        this.exe = exe;
+        this.dir = dir;
+        this.version = version;
+        this.entry = entry;
+    }
+
+    @NotNull
+    public static StlintPackage forExe(@NotNull String exe) {
+        return packages.computeIfAbsent(exe, StlintPackage::load);
+    }
+
+    public static void invalidate() {
+        packages.clear();
+        NodeCompileCache.invalidate();
+    }
+
+    public boolean supportsStdin() {
+        Boolean supports = supportsStdin;
+
+        if (supports == null) {
+            supports = probeStdin();
+            supportsStdin = supports;
+        }
+
+        return supports;
+    }
+
+    private boolean probeStdin() {
+        GeneralCommandLine commandLine = new GeneralCommandLine(exe, "--help")
+                .withCharset(StandardCharsets.UTF_8);
+
+        try {
+            ProcessOutput output = NodeRunner.execute(commandLine, PROBE_TIME_OUT);
+            return output.getStdout().contains("--stdin");
+        } catch (Exception e) {
+            log.info(e);
+            return false;
+        }
+    }
+
+    @NotNull
+    private static StlintPackage load(@NotNull String exe) {
+        File bin = new File(exe).getParentFile();
+
+        if (bin == null || bin.getParentFile() == null) {
+            return new StlintPackage(exe, null, "", null);
+        }
+
+        File dir = NodeFinder.resolvePath(bin.getParentFile(), "stlint", "", "");
+        File packageJson = new File(dir, "package.json");
+
+        if (!packageJson.exists()) {
+            return new StlintPackage(exe, null, "", null);
+        }
+
+        String version = "";
+        String entry = null;
+
+        try (Reader reader = Files.newBufferedReader(packageJson.toPath(), StandardCharsets.UTF_8)) {
+            PackageJson data = gson.fromJson(reader, PackageJson.class);
+
+            if (data != null && data.version != null) {
+                version = data.version;
+            }
+
+            if (data != null) {
+                entry = resolveEntry(dir, data.bin);
+            }
+        } catch (Exception e) {
+            log.info(e);
+        }
+
+        return new StlintPackage(exe, dir.getAbsolutePath(), version, entry);
+    }
+
+    @Nullable
+    private static String resolveEntry(@NotNull File dir, @Nullable JsonElement bin) {
+        String path = null;
+
+        if (bin != null && bin.isJsonPrimitive()) {
+            path = bin.getAsString();
+        } else if (bin != null && bin.isJsonObject()) {
+            JsonElement stlint = bin.getAsJsonObject().get(StLintUtil.PACKAGE_NAME);
+
+            if (stlint != null && stlint.isJsonPrimitive()) {
+                path = stlint.getAsString();
+            }
+        }
+
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        File entry = new File(dir, FileUtil.toSystemDependentName(path));
+
+        return entry.isFile() ? entry.getAbsolutePath() : null;
+    }
+}
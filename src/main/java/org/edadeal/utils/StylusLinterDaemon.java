@@ -0,0 +1,280 @@
+package org.edadeal.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessIOExecutorService;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One long-lived node process running stlint/daemon.js. Requests and responses are single JSON lines.
+ */
+final class StylusLinterDaemon {
+    private static final Logger log = Logger.getInstance(StylusLinterDaemon.class);
+    private static final Gson gson = new Gson();
+    private static final int READY_TIME_OUT = (int) TimeUnit.SECONDS.toMillis(15L);
+    private static final int CANCEL_POLL_INTERVAL = 20;
+
+    static class Request {
+        int id;
+        String file;
+        String config;
+        String content;
+        /**
+         * Version the daemon should keep the content under, null when it should not keep it
+         */
+        Long version;
+        Long baseVersion;
+        List<DocumentDeltas.Delta> edits;
+        /**
+         * Expected length after applying the edits
+         */
+        Integer length;
+    }
+
+    /**
+     * Drops a request still queued in the daemon
+     */
+    static class Cancel {
+        int cancel;
+    }
+
+    static class Response {
+        int id;
+        boolean ok;
+        boolean ready;
+        boolean resync;
+        String output;
+        String error;
+    }
+
+    private final Process process;
+    private final Writer writer;
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private final CompletableFuture<Response> ready = new CompletableFuture<>();
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private StylusLinterDaemon(@NotNull Process process) {
+        this.process = process;
+        this.writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        ProcessIOExecutorService.INSTANCE.execute(this::readResponses);
+        ProcessIOExecutorService.INSTANCE.execute(this::readErrors);
+    }
+
+    @NotNull
+    static StylusLinterDaemon start(
+            @NotNull String node,
+            @NotNull List<String> nodeOptions,
+            @NotNull String script,
+            @NotNull String packageDir,
+            @NotNull String cwd
+    ) throws ExecutionException {
+        GeneralCommandLine commandLine = new GeneralCommandLine(node)
+                .withParameters(nodeOptions)
+                .withParameters(script, packageDir)
+                .withCharset(StandardCharsets.UTF_8)
+                .withWorkDirectory(cwd);
+
+        StylusLinterDaemon daemon = new StylusLinterDaemon(commandLine.createProcess());
+
+        Response response = null;
+
+        try {
+            response = daemon.ready.get(READY_TIME_OUT, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.info(e);
+        }
+
+        if (response == null || !response.ok) {
+            daemon.destroy();
+            throw new ExecutionException("stlint daemon did not start: " + (response != null ? response.error : "no answer"));
+        }
+
+        return daemon;
+    }
+
+    /**
+     * @return version of the file text the daemon holds, as far as we know
+     */
+    @Nullable
+    Long getVersion(@NotNull String file) {
+        return versions.get(file);
+    }
+
+    void setVersion(@NotNull String file, @Nullable Long version) {
+        if (version != null) {
+            versions.put(file, version);
+        } else {
+            versions.remove(file);
+        }
+    }
+
+    /**
+     * @return true when no request is in flight and none was sent for the given time
+     */
+    boolean isIdle(long millis) {
+        return pending.isEmpty() && System.currentTimeMillis() - lastUsed >= millis;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        process.destroy();
+    }
+
+    /**
+     * A cancelled request is abandoned rather than killed, so the warm process survives: the daemon is told to skip it
+     * while it is queued, a lint already running finishes and its late response is dropped.
+     */
+    @NotNull
+    Response send(@NotNull Request request, int timeoutInMilliseconds, @NotNull ProgressIndicator indicator) throws ExecutionException {
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        lastUsed = System.currentTimeMillis();
+
+        try {
+            // ids are assigned under the lock, the daemon relies on them growing in the order it reads them
+            synchronized (writer) {
+                request.id = lastId.incrementAndGet();
+                pending.put(request.id, future);
+                writer.write(gson.toJson(request));
+                writer.write('\n');
+                writer.flush();
+            }
+
+            final Response response;
+
+            try {
+                response = await(future, timeoutInMilliseconds, indicator);
+            } catch (ProcessCanceledException e) {
+                cancel(request.id);
+                throw e;
+            }
+
+            if (response == null) {
+                throw new ExecutionException("stlint daemon exited");
+            }
+
+            return response;
+        } catch (IOException | InterruptedException | java.util.concurrent.ExecutionException e) {
+            throw new ExecutionException(e);
+        } catch (TimeoutException e) {
+            LintStats.count(LintStats.Counter.TIMEOUTS);
+            // a daemon that stopped answering is not reused, the pool starts a fresh one
+            destroy();
+            throw new ExecutionException("stlint daemon request is timed out");
+        } finally {
+            pending.remove(request.id);
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private void cancel(int id) {
+        final Cancel cancel = new Cancel();
+
+        cancel.cancel = id;
+
+        try {
+            synchronized (writer) {
+                writer.write(gson.toJson(cancel));
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            log.debug(e);
+        }
+    }
+
+    @Nullable
+    private static Response await(
+            @NotNull CompletableFuture<Response> future,
+            int timeoutInMilliseconds,
+            @NotNull ProgressIndicator indicator
+    ) throws InterruptedException, java.util.concurrent.ExecutionException, TimeoutException {
+        final long deadline = System.currentTimeMillis() + timeoutInMilliseconds;
+
+        while (true) {
+            try {
+                return future.get(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (indicator.isCanceled()) {
+                    LintStats.count(LintStats.Counter.CANCELLATIONS);
+                    throw new ProcessCanceledException();
+                }
+
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void readResponses() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                Response response;
+
+                try {
+                    response = gson.fromJson(line, Response.class);
+                } catch (JsonSyntaxException e) {
+                    log.info("unexpected stlint daemon output: " + line);
+                    continue;
+                }
+
+                if (response == null) {
+                    continue;
+                }
+
+                if (response.id == 0) {
+                    ready.complete(response);
+                    continue;
+                }
+
+                final CompletableFuture<Response> future = pending.remove(response.id);
+
+                if (future != null) {
+                    future.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            log.debug(e);
+        } finally {
+            ready.complete(null);
+            pending.values().forEach(future -> future.complete(null));
+        }
+    }
+
+    private void readErrors() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                log.debug("stlint daemon: " + line);
+            }
+        } catch (IOException e) {
+            log.debug(e);
+        }
+    }
+}
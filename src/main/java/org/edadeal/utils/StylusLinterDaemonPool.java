@@ -0,0 +1,322 @@
+package org.edadeal.utils;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Keeps one stlint daemon per (interpreter, stlint package, working root, worker slot).
+ * Every method returns null when the daemon cannot serve the request, so callers fall back to spawning stlint.
+ */
+public final class StylusLinterDaemonPool implements Disposable {
+    private static final Logger log = Logger.getInstance(StylusLinterDaemonPool.class);
+    private static final long RETRY_DELAY = TimeUnit.MINUTES.toMillis(5L);
+    private static final String SCRIPT = "/stlint/daemon.js";
+    private static final int START_POLL_INTERVAL = 20;
+    /**
+     * Daemons of batch worker slots are stopped after this long without a request, the editor's one is kept
+     */
+    private static final long BATCH_IDLE_TIME_OUT = TimeUnit.MINUTES.toMillis(1L);
+
+    private final Map<String, StylusLinterDaemon> daemons = new ConcurrentHashMap<>();
+    private final Map<String, Long> failures = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<StylusLinterDaemon>> starting = new ConcurrentHashMap<>();
+    private final Set<String> batchKeys = ConcurrentHashMap.newKeySet();
+    private final ScheduledFuture<?> reaper;
+
+    public StylusLinterDaemonPool() {
+        reaper = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::stopIdleBatchDaemons,
+                BATCH_IDLE_TIME_OUT,
+                BATCH_IDLE_TIME_OUT / 2,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    private File script;
+
+    @NotNull
+    public static StylusLinterDaemonPool getInstance() {
+        return ApplicationManager.getApplication().getService(StylusLinterDaemonPool.class);
+    }
+
+    @Nullable
+    String lint(@NotNull StylusLinterRunner.Params params, @NotNull ProgressIndicator indicator) {
+        if (!Registry.is("stlint.daemon.enabled") || params.node == null) {
+            return null;
+        }
+
+        // the daemon only lints; autocomplete must not wait behind queued lints just to be refused
+        if (params.params != null && params.params.command != null) {
+            return null;
+        }
+
+        final String packageDir = StlintPackage.forExe(params.StylusLinterExe).dir;
+
+        if (packageDir == null) {
+            return null;
+        }
+
+        final List<String> nodeOptions = StylusLinterRunner.getNodeOptions();
+        final int worker = params.params != null ? params.params.worker : 0;
+        final String key = params.node + '\n' + nodeOptions + '\n' + packageDir + '\n' + params.cwd + '\n' + worker;
+
+        if (worker > 0) {
+            batchKeys.add(key);
+        }
+
+        final StylusLinterDaemon daemon = acquire(key, params.node, nodeOptions, packageDir, params.cwd, indicator);
+
+        if (daemon == null) {
+            return null;
+        }
+
+        StylusLinterDaemon.Request request = new StylusLinterDaemon.Request();
+
+        request.file = params.file;
+        request.config = params.StylusLinterConfig;
+
+        final boolean patched = prepareContent(daemon, request, params);
+        final long start = System.nanoTime();
+
+        LintStats.count(LintStats.Counter.DAEMON_REQUESTS);
+
+        try {
+            StylusLinterDaemon.Response response = daemon.send(request, StylusLinterRunner.TIME_OUT, indicator);
+
+            if (!response.ok && response.resync && patched) {
+                log.debug("stlint daemon lost track of " + params.file + ", sending the full text");
+                LintStats.count(LintStats.Counter.DAEMON_RESYNCS);
+                setFullContent(request, params);
+                response = daemon.send(request, StylusLinterRunner.TIME_OUT, indicator);
+            }
+
+            if (!response.ok) {
+                log.info("stlint daemon could not lint " + params.file + ": " + response.error);
+                daemon.setVersion(params.file, null);
+                return null;
+            }
+
+            daemon.setVersion(params.file, request.version);
+
+            return response.output;
+        } catch (ExecutionException e) {
+            log.info(e);
+
+            daemon.setVersion(params.file, null);
+
+            if (!daemon.isAlive()) {
+                daemons.remove(key, daemon);
+            }
+
+            return null;
+        } finally {
+            // timed out and cancelled requests are the slow ones, they count too
+            LintStats.record(LintStats.Stage.DAEMON, start);
+        }
+    }
+
+    /**
+     * Sends only the edits since the version the daemon holds when the document history covers them
+     *
+     * @return true when the request carries edits instead of the text
+     */
+    private static boolean prepareContent(
+            @NotNull StylusLinterDaemon daemon,
+            @NotNull StylusLinterDaemon.Request request,
+            @NotNull StylusLinterRunner.Params params
+    ) {
+        final Document document = params.params != null ? params.params.document : null;
+        final long version = params.params != null ? params.params.version : 0;
+
+        if (document == null || version == 0 || params.content == null || !Registry.is("stlint.daemon.incremental")) {
+            setFullContent(request, params);
+            return false;
+        }
+
+        DocumentDeltas.track(document);
+
+        request.version = version;
+
+        final Long known = daemon.getVersion(params.file);
+        final List<DocumentDeltas.Delta> edits = known != null ? DocumentDeltas.between(document, known, version) : null;
+
+        if (edits == null) {
+            setFullContent(request, params);
+            return false;
+        }
+
+        request.baseVersion = known;
+        request.edits = edits;
+        request.length = params.content.length();
+        request.content = null;
+
+        return true;
+    }
+
+    private static void setFullContent(@NotNull StylusLinterDaemon.Request request, @NotNull StylusLinterRunner.Params params) {
+        request.content = params.content != null ? params.content.toString() : null;
+        request.baseVersion = null;
+        request.edits = null;
+        request.length = null;
+    }
+
+    /**
+     * Only callers of the same key wait for a daemon that is starting, others go on with theirs
+     */
+    @Nullable
+    private StylusLinterDaemon acquire(
+            @NotNull String key,
+            @NotNull String node,
+            @NotNull List<String> nodeOptions,
+            @NotNull String packageDir,
+            @NotNull String cwd,
+            @NotNull ProgressIndicator indicator
+    ) {
+        final StylusLinterDaemon daemon = daemons.get(key);
+
+        if (daemon != null && daemon.isAlive()) {
+            return daemon;
+        }
+
+        final Long failedAt = failures.get(key);
+
+        if (failedAt != null && System.currentTimeMillis() - failedAt < RETRY_DELAY) {
+            return null;
+        }
+
+        final CompletableFuture<StylusLinterDaemon> mine = new CompletableFuture<>();
+        final CompletableFuture<StylusLinterDaemon> started = starting.putIfAbsent(key, mine);
+
+        if (started != null) {
+            return await(started, indicator);
+        }
+
+        try {
+            mine.complete(start(key, node, nodeOptions, packageDir, cwd));
+        } catch (RuntimeException e) {
+            mine.complete(null);
+            throw e;
+        } finally {
+            starting.remove(key, mine);
+        }
+
+        return mine.getNow(null);
+    }
+
+    @Nullable
+    private StylusLinterDaemon start(
+            @NotNull String key,
+            @NotNull String node,
+            @NotNull List<String> nodeOptions,
+            @NotNull String packageDir,
+            @NotNull String cwd
+    ) {
+        final StylusLinterDaemon current = daemons.get(key);
+
+        if (current != null && current.isAlive()) {
+            return current;
+        }
+
+        final StylusLinterDaemon daemon;
+
+        try {
+            daemon = StylusLinterDaemon.start(node, nodeOptions, getScript().getAbsolutePath(), packageDir, cwd);
+        } catch (ExecutionException | IOException e) {
+            log.info("stlint daemon is not available, falling back to a process per lint", e);
+            failures.put(key, System.currentTimeMillis());
+            daemons.remove(key);
+            return null;
+        }
+
+        failures.remove(key);
+        daemons.put(key, daemon);
+
+        return daemon;
+    }
+
+    @Nullable
+    private static StylusLinterDaemon await(@NotNull CompletableFuture<StylusLinterDaemon> started, @NotNull ProgressIndicator indicator) {
+        while (true) {
+            try {
+                return started.get(START_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                indicator.checkCanceled();
+            } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    @NotNull
+    private synchronized File getScript() throws IOException {
+        if (script == null) {
+            File file = new File(PathManager.getSystemPath(), "stlint/daemon.js");
+
+            Files.createDirectories(file.getParentFile().toPath());
+
+            try (InputStream stream = Objects.requireNonNull(StylusLinterDaemonPool.class.getResourceAsStream(SCRIPT))) {
+                Files.copy(stream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            script = file;
+        }
+
+        return script;
+    }
+
+    /**
+     * Inspect Code starts a daemon per worker slot, these go once the batch is over
+     */
+    private void stopIdleBatchDaemons() {
+        for (final String key: batchKeys) {
+            final StylusLinterDaemon daemon = daemons.get(key);
+
+            if (daemon == null) {
+                batchKeys.remove(key);
+            } else if (daemon.isIdle(BATCH_IDLE_TIME_OUT) && daemons.remove(key, daemon)) {
+                log.debug("stopping idle stlint batch daemon " + key);
+                batchKeys.remove(key);
+                daemon.destroy();
+            }
+        }
+    }
+
+    /**
+     * Stops every daemon, e.g. after the stlint package on disk changed; they restart on the next lint
+     */
+    public void stopAll() {
+        daemons.values().forEach(StylusLinterDaemon::destroy);
+        daemons.clear();
+        failures.clear();
+    }
+
+    @Override
+    public void dispose() {
+        reaper.cancel(false);
+        stopAll();
+    }
+}
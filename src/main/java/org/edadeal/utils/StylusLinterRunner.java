@@ -1,15 +1,35 @@
 package org.edadeal.utils;
 
+import com.intellij.concurrency.SensitiveProgressWrapper;
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
 import com.intellij.execution.process.ProcessOutput;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.execution.ParametersListUtil;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public final class StylusLinterRunner {
@@ -17,9 +37,46 @@ public final class StylusLinterRunner {
     }
 
     private static final Logger log = Logger.getInstance(StylusLinterRunner.class);
-    private static final int TIME_OUT = (int) TimeUnit.SECONDS.toMillis(120L);
+    static final int TIME_OUT = (int) TimeUnit.SECONDS.toMillis(120L);
     private static final int FILES_NOT_FOUND = 66;
 
+    // the .cmd shim on Windows goes through cmd.exe, which limits the whole command line to 8191 chars
+    private static final int MAX_ARGUMENT_CONTENT = SystemInfo.isWindows ? 4 * 1024 : 64 * 1024;
+    private static final Map<String, Object> contentFileLocks = new ConcurrentHashMap<>();
+    private static final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    private static final class Run {
+        @NotNull
+        final ProgressIndicator indicator;
+        @Nullable
+        final CharSequence content;
+
+        Run(@NotNull ProgressIndicator indicator, @Nullable CharSequence content) {
+            this.indicator = indicator;
+            this.content = content;
+        }
+    }
+
+    /**
+     * How the file text reaches stlint: small texts stay on the command line,
+     * large ones are streamed through stdin when stlint supports it or through a reused temp file otherwise.
+     */
+    public enum ContentTransport {
+        ARGUMENT,
+        STDIN,
+        TEMP_FILE
+    }
+
+    /**
+     * Reads stlint's json report as it is produced instead of receiving it as one String.
+     */
+    public interface OutputConsumer {
+        /**
+         * @param contentPath path stlint read the content from, when it differs from the linted file
+         */
+        void consume(@NotNull Reader stdout, @Nullable String contentPath) throws IOException;
+    }
+
     public static class ExtraParams {
         @Nullable
         public String command;
@@ -29,6 +86,28 @@ public final class StylusLinterRunner {
 
         @Nullable
         public Integer line;
+
+        /**
+         * Cancelling it kills the stlint process; defaults to the indicator of the calling thread
+         */
+        @Nullable
+        public ProgressIndicator indicator;
+
+        /**
+         * Daemon slot of the stlint package serving this run; the editor uses 0, batch inspection spreads over the others
+         */
+        public int worker;
+
+        /**
+         * Document the content was taken from, lets a daemon receive only the edits since its last run
+         */
+        @Nullable
+        public Document document;
+
+        /**
+         * Modification stamp of the document the content matches, 0 when unknown
+         */
+        public long version;
     }
 
     public static class Params {
@@ -41,18 +120,33 @@ public final class StylusLinterRunner {
         @Nullable
         final String StylusLinterConfig;
         @Nullable
-        final String content;
+        final CharSequence content;
         @Nullable
         final ExtraParams params;
+        @Nullable
+        final String node;
 
         public Params(
                 @NotNull String cwd,
                 @NotNull String file,
                 @NotNull String StylusLinterExe,
                 @Nullable String StylusLinterConfig,
-                @Nullable String content,
+                @Nullable CharSequence content,
                 @Nullable ExtraParams params
         ) {
+            this(cwd, file, StylusLinterExe, StylusLinterConfig, content, params, null);
+        }
+
+        public Params(
+                @NotNull String cwd,
+                @NotNull String file,
+                @NotNull String StylusLinterExe,
+                @Nullable String StylusLinterConfig,
+                @Nullable CharSequence content,
+                @Nullable ExtraParams params,
+                @Nullable String node
+        ) {
+            this.node = node;
             this.cwd = cwd;
             this.file = file;
             this.StylusLinterExe = StylusLinterExe;
@@ -66,22 +160,83 @@ public final class StylusLinterRunner {
         return runLint(new Params(cwd, file, StylusLinterExe, null, null, null));
     }
 
+    /**
+     * A newer run for the same file and command with different content cancels the older one still in flight.
+     *
+     * @throws ProcessCanceledException when this run was cancelled or superseded
+     */
     public static Result runLint(Params params) {
+        return runLint(params, (OutputConsumer) null);
+    }
+
+    /**
+     * With a consumer the report is streamed into it and {@link Result#output} stays null.
+     *
+     * @throws ProcessCanceledException when this run was cancelled or superseded
+     */
+    public static Result runLint(Params params, @Nullable OutputConsumer consumer) {
+        // the caller's indicator may span a whole inspection or index run, a superseded run cancels only its own child
+        final ProgressIndicator indicator = new SensitiveProgressWrapper(getIndicator(params));
+        final String runKey = params.file + '\n' + (params.params != null ? params.params.command : null);
+        final Run run = new Run(indicator, params.content);
+        final Run previous = runs.put(runKey, run);
+
+        if (previous != null && !StringUtil.equals(previous.content, params.content)) {
+            previous.indicator.cancel();
+        }
+
+        try {
+            return runLint(params, indicator, consumer);
+        } finally {
+            runs.remove(runKey, run);
+        }
+    }
+
+    private static Result runLint(Params params, @NotNull ProgressIndicator indicator, @Nullable OutputConsumer consumer) {
         Result result = new Result();
 
+        indicator.checkCanceled();
+
+        final String daemonOutput = StylusLinterDaemonPool.getInstance().lint(params, indicator);
+
+        if (daemonOutput != null) {
+            if (consumer == null) {
+                result.output = daemonOutput;
+                result.isOk = true;
+                return result;
+            }
+
+            try {
+                consumer.consume(new StringReader(daemonOutput), null);
+                result.isOk = true;
+            } catch (IOException | IllegalStateException e) {
+                result.errorOutput = e.toString();
+            }
+
+            return result;
+        }
+
+        final ContentTransport transport = chooseTransport(params);
+
+        if (transport == ContentTransport.TEMP_FILE) {
+            result.contentPath = getContentFile(params.file).getAbsolutePath();
+        }
+
         try {
-            ProcessOutput out = lint(params);
+            ProcessOutput out = lint(params, transport, indicator, consumer);
             result.errorOutput = out.getStderr();
 
             try {
                 if (out.getExitCode() != FILES_NOT_FOUND) {
-                    result.output = out.getStdout();
+                    result.output = consumer == null ? out.getStdout() : null;
                     result.isOk = true;
                 }
             } catch (Exception e) {
                 log.error(out.getStdout());
                 result.errorOutput = out.getStdout();
             }
+        } catch (ProcessCanceledException e) {
+            throw e;
         } catch (Exception e) {
             result.errorOutput = e.toString();
         }
@@ -89,22 +244,142 @@ public final class StylusLinterRunner {
         return result;
     }
 
+    @NotNull
+    private static ProgressIndicator getIndicator(@NotNull Params params) {
+        if (params.params != null && params.params.indicator != null) {
+            return params.params.indicator;
+        }
+
+        final ProgressIndicator indicator = ProgressManager.getGlobalProgressIndicator();
+
+        return indicator != null ? indicator : new EmptyProgressIndicator();
+    }
+
     public static class Result {
         public boolean isOk = false;
         public String output;
         public String errorOutput;
+        /**
+         * Path stlint actually read the content from, when it differs from the linted file
+         */
+        @Nullable
+        public String contentPath;
+    }
+
+    @NotNull
+    public static ContentTransport chooseTransport(@NotNull Params params) {
+        if (params.content == null || params.content.length() <= MAX_ARGUMENT_CONTENT) {
+            return ContentTransport.ARGUMENT;
+        }
+
+        return StlintPackage.forExe(params.StylusLinterExe).supportsStdin() ? ContentTransport.STDIN : ContentTransport.TEMP_FILE;
     }
 
     @Nullable
     public static ProcessOutput lint(Params params) throws ExecutionException {
+        return lint(params, chooseTransport(params), getIndicator(params), null);
+    }
+
+    @Nullable
+    public static ProcessOutput lint(
+            Params params,
+            @NotNull ContentTransport transport,
+            @Nullable ProgressIndicator indicator,
+            @Nullable OutputConsumer consumer
+    ) throws ExecutionException {
+        final File compileCache = NodeCompileCache.getDir(params.StylusLinterExe);
+
+        if (transport == ContentTransport.TEMP_FILE && params.content != null) {
+            final File contentFile = getContentFile(params.file);
+
+            synchronized (contentFileLocks.computeIfAbsent(contentFile.getAbsolutePath(), path -> new Object())) {
+                FileUtil.createParentDirs(contentFile);
+
+                try (Writer writer = Files.newBufferedWriter(contentFile.toPath(), StandardCharsets.UTF_8)) {
+                    NodeRunner.write(writer, params.content);
+                } catch (IOException e) {
+                    throw new ExecutionException(e);
+                }
+
+                return execute(
+                        createCommandLine(params, transport, contentFile.getAbsolutePath(), compileCache),
+                        null,
+                        indicator,
+                        consumer,
+                        contentFile.getAbsolutePath(),
+                        compileCache
+                );
+            }
+        }
+
+        return execute(
+                createCommandLine(params, transport, params.file, compileCache),
+                transport == ContentTransport.STDIN ? params.content : null,
+                indicator,
+                consumer,
+                null,
+                compileCache
+        );
+    }
+
+    @NotNull
+    private static ProcessOutput execute(
+            @NotNull GeneralCommandLine commandLine,
+            @Nullable CharSequence input,
+            @Nullable ProgressIndicator indicator,
+            @Nullable OutputConsumer consumer,
+            @Nullable String contentPath,
+            @Nullable File compileCache
+    ) throws ExecutionException {
+        final boolean warm = compileCache != null && NodeCompileCache.isWarm(compileCache);
+        final long start = System.nanoTime();
+
+        final ProcessOutput output;
+
+        try {
+            output = consumer == null
+                    ? NodeRunner.execute(commandLine, TIME_OUT, input, indicator)
+                    : NodeRunner.execute(commandLine, TIME_OUT, input, indicator, stdout -> consumer.consume(stdout, contentPath));
+        } finally {
+            // failed and cancelled runs took their time as well
+            LintStats.record(LintStats.Stage.RUN, start);
+        }
+
+        if (compileCache != null) {
+            NodeCompileCache.record(warm, System.nanoTime() - start);
+        }
+
+        return output;
+    }
+
+    @NotNull
+    private static GeneralCommandLine createCommandLine(
+            @NotNull Params params,
+            @NotNull ContentTransport transport,
+            @NotNull String file,
+            @Nullable File compileCache
+    ) {
         GeneralCommandLine commandLine = new GeneralCommandLine();
         commandLine
                 .withCharset(StandardCharsets.UTF_8)
                 .setWorkDirectory(params.cwd);
 
-        commandLine.setExePath(params.StylusLinterExe);
+        if (compileCache != null) {
+            commandLine.withEnvironment(NodeCompileCache.ENV, compileCache.getAbsolutePath());
+        }
+
+        final String entry = params.node != null ? StlintPackage.forExe(params.StylusLinterExe).entry : null;
+
+        if (entry != null) {
+            // skip the shell or .cmd wrapper, it forks one more process before node starts
+            commandLine.setExePath(params.node);
+            commandLine.addParameters(getNodeOptions());
+            commandLine.addParameter(entry);
+        } else {
+            commandLine.setExePath(params.StylusLinterExe);
+        }
 
-        commandLine.addParameter(params.file);
+        commandLine.addParameter(file);
 
         commandLine.addParameter("--reporter");
         commandLine.addParameter("json");
@@ -114,12 +389,14 @@ public final class StylusLinterRunner {
             commandLine.addParameter(params.StylusLinterConfig);
         }
 
-        if (StringUtils.isNotEmpty(params.content)) {
+        if (transport == ContentTransport.STDIN) {
+            commandLine.addParameter("--stdin");
+        } else if (transport == ContentTransport.ARGUMENT && params.content != null && params.content.length() > 0) {
             commandLine.addParameter("--content");
             if (SystemUtils.IS_OS_WINDOWS) {
                 String sep = "@n@";
 
-                commandLine.addParameter(params.content
+                commandLine.addParameter(params.content.toString()
                         .replaceAll("\\r\\n", sep)
                         .replaceAll("\\n\\r", sep)
                         .replaceAll("[\\n\\r]", sep)
@@ -128,7 +405,7 @@ public final class StylusLinterRunner {
                 commandLine.addParameter("--newline");
                 commandLine.addParameter(sep);
             } else {
-                commandLine.addParameter(params.content);
+                commandLine.addParameter(params.content.toString());
             }
         }
 
@@ -149,6 +426,29 @@ public final class StylusLinterRunner {
             }
         }
 
-        return NodeRunner.execute(commandLine, TIME_OUT);
+        return commandLine;
+    }
+
+    /**
+     * Extra node flags from the registry, e.g. --max-old-space-size=4096
+     */
+    @NotNull
+    static List<String> getNodeOptions() {
+        return ParametersListUtil.parse(Registry.stringValue("stlint.node.options"));
+    }
+
+    /**
+     * One temp file per linted file under the IDE temp directory, overwritten on every run.
+     * stlint gets the config resolved for the linted file through --config, not by looking next to this copy.
+     */
+    @NotNull
+    private static File getContentFile(@NotNull String file) {
+        final File source = new File(file);
+        final File dir = new File(
+                FileUtil.getTempDirectory(),
+                "stlint-content" + File.separator + Integer.toHexString(String.valueOf(source.getParent()).hashCode())
+        );
+
+        return new File(dir, source.getName());
     }
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+'use strict';
+
+// Long-lived stlint worker used by the IDE plugin.
+// Protocol: one JSON request per line on stdin, one JSON response per line on stdout.
+// The first line written is {"id":0,"ok":true,"ready":true} once stlint is loaded.
+// A request with a version leaves its content here; a later request may then send only
+// the edits made since baseVersion. On any mismatch the answer is {"resync":true} and
+// the plugin sends the full text again.
+// {"cancel":id} drops a queued request the plugin gave up on; it gets no answer. A lint that
+// has already started runs to the end, its answer is ignored by the plugin.
+
+const readline = require('readline');
+
+const packageDir = process.argv[2];
+const write = process.stdout.write.bind(process.stdout);
+
+function send(message) {
+    write(JSON.stringify(message) + '\n');
+}
+
+let Linter;
+
+try {
+    Linter = require(packageDir).Linter;
+
+    if (typeof Linter !== 'function') {
+        throw new Error('stlint package at ' + packageDir + ' does not export Linter');
+    }
+} catch (e) {
+    send({id: 0, ok: false, error: String(e && e.stack || e)});
+    process.exit(1);
+}
+
+async function capture(fn) {
+    const chunks = [];
+    const originalWrite = process.stdout.write;
+    const originalLog = console.log;
+    const originalExit = process.exit;
+
+    process.stdout.write = (chunk, encoding, callback) => {
+        chunks.push(String(chunk));
+
+        if (typeof encoding === 'function') {
+            encoding();
+        } else if (typeof callback === 'function') {
+            callback();
+        }
+
+        return true;
+    };
+
+    console.log = (...args) => {
+        chunks.push(args.join(' ') + '\n');
+    };
+
+    process.exit = () => {};
+
+    try {
+        await fn();
+    } finally {
+        process.stdout.write = originalWrite;
+        console.log = originalLog;
+        process.exit = originalExit;
+    }
+
+    return chunks.join('');
+}
+
+const MAX_FILES = 64;
+const files = new Map();
+
+function remember(file, version, content) {
+    files.delete(file);
+    files.set(file, {version, content});
+
+    if (files.size > MAX_FILES) {
+        files.delete(files.keys().next().value);
+    }
+}
+
+// Returns the text to lint, or null when the edits do not apply to what we hold.
+function resolveContent(request) {
+    if (!request.edits) {
+        if (request.version && typeof request.content === 'string') {
+            remember(request.file, request.version, request.content);
+        }
+
+        return request.content;
+    }
+
+    const known = files.get(request.file);
+
+    if (!known || known.version !== request.baseVersion) {
+        return null;
+    }
+
+    let content = known.content;
+
+    for (const edit of request.edits) {
+        if (edit.offset < 0 || edit.offset + edit.length > content.length) {
+            files.delete(request.file);
+            return null;
+        }
+
+        content = content.slice(0, edit.offset) + edit.text + content.slice(edit.offset + edit.length);
+    }
+
+    if (content.length !== request.length) {
+        files.delete(request.file);
+        return null;
+    }
+
+    remember(request.file, request.version, content);
+
+    return content;
+}
+
+async function lint(request, content) {
+    const options = {reporter: 'json'};
+
+    if (request.config) {
+        options.config = request.config;
+    }
+
+    const linter = new Linter(options);
+
+    return capture(async () => {
+        await linter.lint(request.file, content);
+        await linter.display(false);
+    });
+}
+
+const cancelled = new Set();
+let lastStarted = 0;
+
+async function handle(request) {
+    lastStarted = request.id;
+
+    if (cancelled.delete(request.id)) {
+        return;
+    }
+
+    try {
+        if (request.command) {
+            throw new Error('command ' + request.command + ' is not supported by the daemon');
+        }
+
+        const content = resolveContent(request);
+
+        if (content === null) {
+            send({id: request.id, ok: false, resync: true});
+            return;
+        }
+
+        send({id: request.id, ok: true, output: await lint(request, content)});
+    } catch (e) {
+        send({id: request.id, ok: false, error: String(e && e.stack || e)});
+    }
+}
+
+let queue = Promise.resolve();
+
+readline
+    .createInterface({input: process.stdin})
+    .on('line', (line) => {
+        let request;
+
+        try {
+            request = JSON.parse(line);
+        } catch (e) {
+            return;
+        }
+
+        // not queued: it has to reach requests still waiting behind the running one
+        if (request.cancel) {
+            if (request.cancel > lastStarted) {
+                cancelled.add(request.cancel);
+            }
+
+            return;
+        }
+
+        queue = queue.then(() => handle(request));
+    })
+    .on('close', () => queue.then(() => process.exit(0)));
+
+send({id: 0, ok: true, ready: true});